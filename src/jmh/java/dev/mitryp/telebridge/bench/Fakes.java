@@ -0,0 +1,84 @@
+package dev.mitryp.telebridge.bench;
+
+import dev.mitryp.telebridge.domain.interfaces.LinkRepository;
+import dev.mitryp.telebridge.domain.interfaces.MinecraftBridge;
+import dev.mitryp.telebridge.domain.interfaces.TelegramGateway;
+import dev.mitryp.telebridge.domain.models.ServiceEvent;
+import dev.mitryp.telebridge.domain.models.TelegramInboundMessage;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/** Stand-ins for the server and the Bot API, so command handling can run without either. */
+final class Fakes {
+    private Fakes() {
+    }
+
+    static MinecraftBridge minecraft(Consumer<Object> out, List<String> online) {
+        return new MinecraftBridge() {
+            @Override
+            public void broadcast(String message) {
+                out.accept(message);
+            }
+
+            @Override
+            public List<String> onlineNames() {
+                return online;
+            }
+        };
+    }
+
+    static TelegramGateway telegram(Consumer<Object> out) {
+        return new TelegramGateway() {
+            @Override
+            public void sendService(ServiceEvent kind, String plainText) {
+                out.accept(plainText);
+            }
+
+            @Override
+            public void sendReply(String plainText, Integer replyMessageId, Integer threadId) {
+                out.accept(plainText);
+            }
+
+            @Override
+            public void registerWebhook(String url, String secret) {
+            }
+
+            @Override
+            public void deleteWebhook() {
+            }
+
+            @Override
+            public int pollOnce(int limit, int timeoutSeconds, Consumer<TelegramInboundMessage> consumer) {
+                return 0;
+            }
+        };
+    }
+
+    static LinkRepository links(Map<String, String> tgToMc) {
+        Map<String, String> map = new HashMap<>(tgToMc);
+        return new LinkRepository() {
+            @Override
+            public String resolveMcFromTg(String tgUserOrNull) {
+                return tgUserOrNull == null ? null : map.get(tgUserOrNull);
+            }
+
+            @Override
+            public void link(String tgUsername, String mcName) {
+                map.put(tgUsername, mcName);
+            }
+
+            @Override
+            public String unlinkByMc(String mcName) {
+                return null;
+            }
+
+            @Override
+            public String findTgByMc(String mcName) {
+                return null;
+            }
+        };
+    }
+}
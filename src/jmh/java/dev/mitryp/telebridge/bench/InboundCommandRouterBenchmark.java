@@ -0,0 +1,67 @@
+package dev.mitryp.telebridge.bench;
+
+import dev.mitryp.telebridge.application.services.NameResolver;
+import dev.mitryp.telebridge.application.services.SenderRateLimiter;
+import dev.mitryp.telebridge.application.telegram.InboundCommandRouter;
+import dev.mitryp.telebridge.application.telegram.commands.OnlineCommand;
+import dev.mitryp.telebridge.application.telegram.commands.SayCommand;
+import dev.mitryp.telebridge.domain.models.TelebridgeConfig;
+import dev.mitryp.telebridge.domain.models.TelegramInboundMessage;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link InboundCommandRouter#route} over a group-chat-like mix: mostly /say, some /online, plain chatter the
+ * router has to reject, unknown commands and odd casing. The commands run against no-op fakes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InboundCommandRouterBenchmark {
+    private static final TelegramInboundMessage[] STREAM = {
+            msg("/say hello from telegram", "steve_tg"),
+            msg("lol", "alex_tg"),
+            msg("/say anyone on?", "alex_tg"),
+            msg("/online", null),
+            msg("/SAY  spaced   out  ", "Steve_TG"),
+            msg("/say@TeleBridgeBot hi", "someone"),
+            msg("/weather", "someone"),
+            msg("just chatting in the group, not a command", null),
+            msg("/say привіт 👋", "ukr_player"),
+            msg("/", "someone"),
+    };
+
+    private InboundCommandRouter router;
+    private Object sent;
+    private int next;
+
+    @Setup
+    public void setup() {
+        var mc = Fakes.minecraft(o -> sent = o, List.of("Steve", "Alex", "Notch"));
+        var names = new NameResolver(Fakes.links(Map.of("steve_tg", "Steve", "alex_tg", "Alex")));
+        var tg = Fakes.telegram(o -> sent = o);
+        // Run commands inline so the measurement covers matching plus the command, not a thread hand-off.
+        // Past the first few calls /say takes the rate-limited path, as it would for a spammer.
+        TelebridgeConfig cfg = TelebridgeConfig.defaults();
+        router = new InboundCommandRouter(() -> cfg, () -> "TeleBridgeBot", Runnable::run, Runnable::run, Runnable::run)
+                .register("say", new SayCommand(mc, names, tg, () -> cfg, new SenderRateLimiter(() -> cfg)))
+                .register("online", new OnlineCommand(mc, tg));
+    }
+
+    @Benchmark
+    public Object route() {
+        router.route(STREAM[next]);
+        next = (next + 1) % STREAM.length;
+        return sent;
+    }
+
+    private static TelegramInboundMessage msg(String text, String username) {
+        return new TelegramInboundMessage(text, username, "Display Name", 42, null);
+    }
+}
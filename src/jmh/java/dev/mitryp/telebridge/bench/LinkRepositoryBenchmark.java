@@ -0,0 +1,98 @@
+package dev.mitryp.telebridge.bench;
+
+import dev.mitryp.telebridge.data.repositories.JsonLinkRepository;
+import dev.mitryp.telebridge.data.repositories.MappedLinkRepository;
+import dev.mitryp.telebridge.domain.interfaces.LinkRepository;
+import dev.mitryp.telebridge.utils.metrics.Histogram;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * {@link JsonLinkRepository} and {@link MappedLinkRepository} with 10k and 100k links in a temp directory.
+ * For the JSON store {@code link} is what a /tglink costs the caller (memory plus a queued journal line) and
+ * {@code linkAndFlush} also waits for the journal append and a full snapshot rewrite, i.e. the worst-case save.
+ * The mapped store writes through under a file lock, and its flush is an msync plus a JSON export.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LinkRepositoryBenchmark {
+    @Param({"10000", "100000"})
+    public int links;
+
+    @Param({"json", "mapped"})
+    public String store;
+
+    private Path dir;
+    private LinkRepository repo;
+    private String[] tgNames;
+    private String[] mcNames;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("telebridge-bench");
+        repo = store.equals("mapped")
+                ? new MappedLinkRepository(dir.resolve("links.idx"), dir.resolve("telebridge-links.json"), new Histogram(1e9))
+                : new JsonLinkRepository(dir.resolve("telebridge-links.json"));
+        tgNames = new String[links];
+        mcNames = new String[links];
+        for (int i = 0; i < links; i++) {
+            tgNames[i] = "tg_user_" + i;
+            mcNames[i] = "Player" + i;
+            repo.link(tgNames[i], mcNames[i]);
+        }
+        repo.flush();
+    }
+
+    /** Keeps the writer's backlog from growing across iterations of the write benchmarks. */
+    @TearDown(Level.Iteration)
+    public void settle() {
+        repo.flush();
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanup() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(p);
+        }
+    }
+
+    @Benchmark
+    public String resolveMcFromTg() {
+        return repo.resolveMcFromTg(tgNames[advance()]);
+    }
+
+    @Benchmark
+    public String findTgByMc() {
+        return repo.findTgByMc(mcNames[advance()]);
+    }
+
+    @Benchmark
+    public void link() {
+        int i = advance();
+        repo.link(tgNames[i], mcNames[i]);
+    }
+
+    @Benchmark
+    public void linkAndFlush() {
+        int i = advance();
+        repo.link(tgNames[i], mcNames[i]);
+        repo.flush();
+    }
+
+    private int advance() {
+        int i = next;
+        next = i + 1 == links ? 0 : i + 1;
+        return i;
+    }
+}
@@ -0,0 +1,80 @@
+package dev.mitryp.telebridge.bench;
+
+import dev.mitryp.telebridge.application.telegram.SendMessageEncoder;
+import dev.mitryp.telebridge.domain.models.OutboundMessage;
+import dev.mitryp.telebridge.domain.models.OutboundPriority;
+import dev.mitryp.telebridge.domain.models.TelebridgeConfig;
+import dev.mitryp.telebridge.utils.Markdown;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Escaping and sendMessage body encoding for the lines the bridge actually sends. {@code legacyBuildBody} is the
+ * former TelegramHttpGateway.buildBody path (escape, then URLEncoder, then getBytes) kept as the baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OutboundEncodingBenchmark {
+    private static final String CHAT_ID = "-1001234567890";
+
+    @Param({"chat", "service", "batch"})
+    public String shape;
+
+    private String text;
+    private OutboundMessage message;
+    private TelebridgeConfig cfg;
+    private SendMessageEncoder encoder;
+
+    @Setup
+    public void setup() {
+        text = switch (shape) {
+            case "chat" -> "<Steve> anyone up for the nether? bring 3 obsidian + flint_and_steel (pls!)";
+            case "service" -> "> Alex was slain by Zombie using [Iron Sword]";
+            default -> String.join("\n",
+                    "> Steve joined the game",
+                    "<Steve> hi all :) привіт",
+                    "<Alex> o/ check #base-2 at x=120, z=-40",
+                    "> Alex was blown up by Creeper",
+                    "<Steve> F 💀");
+        };
+        message = new OutboundMessage(CHAT_ID, text, null, null, OutboundPriority.CHAT);
+        cfg = TelebridgeConfig.defaults();
+        encoder = new SendMessageEncoder();
+    }
+
+    @Benchmark
+    public String escapeV2() {
+        return Markdown.escapeV2(text);
+    }
+
+    @Benchmark
+    public String escapeV2ServiceAware() {
+        return Markdown.escapeV2ServiceAware(text);
+    }
+
+    @Benchmark
+    public byte[] encoder() {
+        return encoder.encode(cfg, message);
+    }
+
+    @Benchmark
+    public byte[] legacyBuildBody() {
+        StringBuilder esc = new StringBuilder();
+        for (String line : text.split("\n")) {
+            if (esc.length() > 0) esc.append('\n');
+            esc.append(Markdown.escapeV2ServiceAware(line));
+        }
+        StringBuilder b = new StringBuilder();
+        b.append("chat_id=").append(URLEncoder.encode(CHAT_ID, StandardCharsets.UTF_8));
+        b.append("&text=").append(URLEncoder.encode(esc.toString(), StandardCharsets.UTF_8));
+        b.append("&parse_mode=MarkdownV2&disable_web_page_preview=true");
+        return b.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
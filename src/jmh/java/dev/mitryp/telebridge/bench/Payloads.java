@@ -0,0 +1,16 @@
+package dev.mitryp.telebridge.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+final class Payloads {
+    private Payloads() {
+    }
+
+    static byte[] load(String resource) throws IOException {
+        try (InputStream in = Payloads.class.getResourceAsStream("/" + resource)) {
+            if (in == null) throw new IOException("Missing benchmark resource " + resource);
+            return in.readAllBytes();
+        }
+    }
+}
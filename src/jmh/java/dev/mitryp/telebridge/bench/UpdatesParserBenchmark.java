@@ -0,0 +1,83 @@
+package dev.mitryp.telebridge.bench;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import dev.mitryp.telebridge.application.telegram.UpdatesParser;
+import dev.mitryp.telebridge.domain.models.TelegramInboundMessage;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streaming {@link UpdatesParser} against the Gson tree walk it replaced, on a recorded 100-update backlog.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UpdatesParserBenchmark {
+    private static final Gson GSON = new Gson();
+    private static final long CHAT_ID = -1001234567890L;
+    private static final String CHAT_ID_STR = Long.toString(CHAT_ID);
+
+    private byte[] payload;
+
+    @Setup
+    public void setup() throws IOException {
+        payload = Payloads.load("getUpdates-100.json");
+    }
+
+    @Benchmark
+    public void streaming(Blackhole bh) throws IOException {
+        try (var r = new JsonReader(new InputStreamReader(new ByteArrayInputStream(payload), StandardCharsets.UTF_8))) {
+            UpdatesParser.parse(r, CHAT_ID, (id, msg) -> {
+                bh.consume(id + 1);
+                if (msg != null) bh.consume(msg);
+            });
+        }
+    }
+
+    /** The pre-streaming implementation of TelegramHttpGateway.pollOnce, kept verbatim as the baseline. */
+    @Benchmark
+    public void tree(Blackhole bh) throws IOException {
+        InputStream in = new ByteArrayInputStream(payload);
+        try (var r = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            JsonObject obj = GSON.fromJson(r, JsonObject.class);
+            if (obj == null || !obj.has("ok") || !obj.get("ok").getAsBoolean()) return;
+            JsonArray arr = obj.getAsJsonArray("result");
+            for (JsonElement el : arr) {
+                JsonObject up = el.getAsJsonObject();
+                bh.consume(up.get("update_id").getAsLong() + 1);
+                if (!up.has("message")) continue;
+
+                JsonObject msg = up.getAsJsonObject("message");
+                if (!msg.has("text")) continue;
+
+                JsonObject chat = msg.getAsJsonObject("chat");
+                String chatIdStr = chat.get("id").getAsLong() + "";
+                if (!chatIdStr.equals(CHAT_ID_STR)) continue;
+
+                String text = msg.get("text").getAsString();
+                JsonObject from = msg.getAsJsonObject("from");
+                String tgUser = from.has("username") ? from.get("username").getAsString() : null;
+                String display = (from.has("first_name") ? from.get("first_name").getAsString() : "TG") +
+                        (from.has("last_name") ? (" " + from.get("last_name").getAsString()) : "");
+                Integer messageId = msg.get("message_id").getAsInt();
+                Integer threadId = (msg.has("message_thread_id") ? msg.get("message_thread_id").getAsInt() : null);
+
+                bh.consume(new TelegramInboundMessage(text, tgUser, display.trim(), messageId, threadId));
+            }
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package dev.mitryp.telebridge.loadtest;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for the Bot API: {@code sendMessage} and {@code getUpdates} (plus no-op {@code getMe},
+ * {@code setWebhook} and {@code deleteWebhook}) on {@code http://127.0.0.1:<port>/bot<token>/<method>}.
+ * <p>
+ * {@link Faults} are read per request, so they can be changed while traffic is flowing. A request that draws a
+ * fault is not delivered.
+ */
+public final class FakeBotApi implements AutoCloseable {
+    /** Latency and failure injection; rates are probabilities in 0..1. */
+    public static final class Faults {
+        public volatile int latencyMs;
+        public volatile int jitterMs;
+        public volatile double rate429;
+        public volatile int retryAfterSeconds = 1;
+        public volatile double rate5xx;
+        public volatile double rateDrop;
+    }
+
+    public interface Delivery {
+        void onMessage(String chatId, String text, long receivedNanos);
+    }
+
+    private final Faults faults;
+    private final Delivery delivery;
+    private final HttpServer server;
+    private final ExecutorService pool;
+    private final ArrayDeque<JsonObject> updates = new ArrayDeque<>();
+    private final AtomicInteger messageIds = new AtomicInteger();
+    private long nextUpdateId = 1;
+
+    public final AtomicLong sendRequests = new AtomicLong();
+    public final AtomicLong injected429 = new AtomicLong();
+    public final AtomicLong injected5xx = new AtomicLong();
+    public final AtomicLong injectedDrops = new AtomicLong();
+
+    public FakeBotApi(int port, Faults faults, Delivery delivery) throws IOException {
+        this.faults = faults;
+        this.delivery = delivery;
+        // Enough threads that injected latency overlaps instead of queueing behind one handler
+        this.pool = Executors.newFixedThreadPool(64, r -> {
+            Thread t = new Thread(r, "FakeBotApi");
+            t.setDaemon(true);
+            return t;
+        });
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(pool);
+        server.start();
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /** Queues a text message from {@code username} in {@code chatId} for the next getUpdates. */
+    public void pushUpdate(long chatId, String username, String text) {
+        JsonObject chat = new JsonObject();
+        chat.addProperty("id", chatId);
+        chat.addProperty("type", "supergroup");
+        JsonObject from = new JsonObject();
+        from.addProperty("id", username.hashCode() & 0x7fffffff);
+        from.addProperty("is_bot", false);
+        from.addProperty("first_name", username);
+        from.addProperty("username", username);
+        JsonObject msg = new JsonObject();
+        msg.addProperty("message_id", messageIds.incrementAndGet());
+        msg.add("from", from);
+        msg.add("chat", chat);
+        msg.addProperty("date", System.currentTimeMillis() / 1000);
+        msg.addProperty("text", text);
+
+        synchronized (updates) {
+            JsonObject update = new JsonObject();
+            update.addProperty("update_id", nextUpdateId++);
+            update.add("message", msg);
+            updates.add(update);
+            updates.notifyAll();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        pool.shutdownNow();
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        try {
+            String path = ex.getRequestURI().getPath();
+            String method = path.substring(path.lastIndexOf('/') + 1);
+            switch (method) {
+                case "sendMessage" -> sendMessage(ex);
+                case "getUpdates" -> getUpdates(ex);
+                case "getMe", "setWebhook", "deleteWebhook" -> reply(ex, 200, "{\"ok\":true,\"result\":true}");
+                default -> reply(ex, 404, "{\"ok\":false,\"error_code\":404,\"description\":\"Not Found\"}");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            ex.close();
+        }
+    }
+
+    private void sendMessage(HttpExchange ex) throws IOException, InterruptedException {
+        sendRequests.incrementAndGet();
+        Map<String, String> form = parseForm(new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+        sleepLatency();
+
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        if (rnd.nextDouble() < faults.rateDrop) {
+            injectedDrops.incrementAndGet();
+            // Closing before any response headers makes the server drop the connection
+            return;
+        }
+        if (rnd.nextDouble() < faults.rate429) {
+            injected429.incrementAndGet();
+            int retry = faults.retryAfterSeconds;
+            ex.getResponseHeaders().add("Retry-After", Integer.toString(retry));
+            reply(ex, 429, "{\"ok\":false,\"error_code\":429,\"description\":\"Too Many Requests: retry after " + retry +
+                    "\",\"parameters\":{\"retry_after\":" + retry + "}}");
+            return;
+        }
+        if (rnd.nextDouble() < faults.rate5xx) {
+            injected5xx.incrementAndGet();
+            reply(ex, 502, "{\"ok\":false,\"error_code\":502,\"description\":\"Bad Gateway\"}");
+            return;
+        }
+
+        String text = form.get("text");
+        String chatId = form.get("chat_id");
+        if (text == null || chatId == null) {
+            reply(ex, 400, "{\"ok\":false,\"error_code\":400,\"description\":\"Bad Request: message text is empty\"}");
+            return;
+        }
+        delivery.onMessage(chatId, text, System.nanoTime());
+        reply(ex, 200, "{\"ok\":true,\"result\":{\"message_id\":" + messageIds.incrementAndGet() + "}}");
+    }
+
+    private void getUpdates(HttpExchange ex) throws IOException, InterruptedException {
+        Map<String, String> q = parseForm(ex.getRequestURI().getRawQuery());
+        long offset = Long.parseLong(q.getOrDefault("offset", "0"));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(Long.parseLong(q.getOrDefault("timeout", "0")));
+
+        JsonArray result = new JsonArray();
+        synchronized (updates) {
+            // A positive offset confirms everything below it, like the real API
+            while (offset > 0 && !updates.isEmpty() && updates.peek().get("update_id").getAsLong() < offset) {
+                updates.poll();
+            }
+            long left;
+            while (updates.isEmpty() && (left = deadline - System.nanoTime()) > 0) {
+                TimeUnit.NANOSECONDS.timedWait(updates, left);
+            }
+            for (JsonObject u : updates) result.add(u);
+        }
+        JsonObject body = new JsonObject();
+        body.addProperty("ok", true);
+        body.add("result", result);
+        reply(ex, 200, body.toString());
+    }
+
+    private void sleepLatency() throws InterruptedException {
+        int latency = faults.latencyMs;
+        int jitter = faults.jitterMs;
+        long ms = latency + (jitter > 0 ? ThreadLocalRandom.current().nextInt(jitter + 1) : 0);
+        if (ms > 0) Thread.sleep(ms);
+    }
+
+    private static void reply(HttpExchange ex, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().add("Content-Type", "application/json");
+        ex.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> parseForm(String s) {
+        Map<String, String> map = new HashMap<>();
+        if (s == null || s.isEmpty()) return map;
+        for (String pair : s.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) continue;
+            map.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return map;
+    }
+}
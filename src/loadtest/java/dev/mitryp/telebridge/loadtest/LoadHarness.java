@@ -0,0 +1,231 @@
+package dev.mitryp.telebridge.loadtest;
+
+import dev.mitryp.telebridge.application.telegram.TelegramHttpGateway;
+import dev.mitryp.telebridge.data.repositories.FileUpdateOffsetStore;
+import dev.mitryp.telebridge.data.spool.MappedOutboundSpool;
+import dev.mitryp.telebridge.domain.models.ServiceEvent;
+import dev.mitryp.telebridge.domain.models.TelebridgeConfig;
+import dev.mitryp.telebridge.utils.metrics.BridgeMetrics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Pushes synthetic chat/join/death traffic from {@code --players} players through {@link TelegramHttpGateway}
+ * into a {@link FakeBotApi} and reports delivered lines per second, end-to-end latency and loss.
+ * <p>
+ * Every line carries a {@code #<n>} tag, so it can be matched on arrival even after batching merged it with
+ * others. Latency runs from {@code sendService} to the fake server receiving the request.
+ * <pre>
+ * ./gradlew loadtest --args='--players 200 --seconds 60 --latency 80 --jitter 40 --p429 0.01 --p5xx 0.01 --pdrop 0.005'
+ * </pre>
+ * Options: players, seconds, chat-per-min (per player), join-per-min, death-per-min, batch-ms, chat (id; a
+ * negative id gets group-chat pacing), latency, jitter, p429, retry-after, p5xx, pdrop, drain-seconds.
+ */
+public final class LoadHarness {
+    private static final int TICK_MS = 10;
+
+    private final long[] sentAt;
+    private final BitSet delivered = new BitSet();
+    private long[] latenciesMicros = new long[1024];
+    private int latencyCount;
+    private int deliveredCount;
+    private int duplicates;
+    private long lastDelivery;
+
+    private LoadHarness(int capacity) {
+        this.sentAt = new long[capacity];
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opt = parseArgs(args);
+        int players = intOpt(opt, "players", 50);
+        int seconds = intOpt(opt, "seconds", 30);
+        double chatPerMin = doubleOpt(opt, "chat-per-min", 2);
+        double joinPerMin = doubleOpt(opt, "join-per-min", 0.1);
+        double deathPerMin = doubleOpt(opt, "death-per-min", 0.2);
+        int batchMs = intOpt(opt, "batch-ms", 500);
+        int drainSeconds = intOpt(opt, "drain-seconds", 60);
+        String chatId = opt.getOrDefault("chat", "-1001234567890");
+
+        FakeBotApi.Faults faults = new FakeBotApi.Faults();
+        faults.latencyMs = intOpt(opt, "latency", 50);
+        faults.jitterMs = intOpt(opt, "jitter", 20);
+        faults.rate429 = doubleOpt(opt, "p429", 0);
+        faults.retryAfterSeconds = intOpt(opt, "retry-after", 1);
+        faults.rate5xx = doubleOpt(opt, "p5xx", 0);
+        faults.rateDrop = doubleOpt(opt, "pdrop", 0);
+
+        double perSecond = players * (chatPerMin + joinPerMin + deathPerMin) / 60.0;
+        LoadHarness h = new LoadHarness((int) (perSecond * seconds * 1.5) + 1024);
+        Path dir = Files.createTempDirectory("telebridge-load");
+        ScheduledExecutorService outbound = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "TeleBridge-Outbound");
+            t.setDaemon(true);
+            return t;
+        });
+        MappedOutboundSpool spool = new MappedOutboundSpool(dir.resolve("spool"));
+        FileUpdateOffsetStore offsets = new FileUpdateOffsetStore(dir.resolve("offset.bin"));
+
+        try (FakeBotApi api = new FakeBotApi(0, faults, h::onMessage)) {
+            BridgeMetrics metrics = new BridgeMetrics();
+            TelebridgeConfig cfg = TelebridgeConfig.defaults().withBotApi(api.baseUrl(), "123456:LOADTEST", chatId, batchMs);
+            TelegramHttpGateway gateway = new TelegramHttpGateway(() -> cfg, outbound, spool, offsets, metrics);
+            gateway.start();
+
+            System.out.printf(Locale.ROOT, "%d players, %.1f lines/s for %ds against %s (chat %s)%n",
+                    players, perSecond, seconds, api.baseUrl(), chatId);
+            long start = System.nanoTime();
+            int sent = h.produce(gateway, players, chatPerMin, joinPerMin, deathPerMin, seconds);
+            gateway.flush();
+            long produced = System.nanoTime();
+
+            long drainDeadline = produced + TimeUnit.SECONDS.toNanos(drainSeconds);
+            while (h.delivered() < sent && System.nanoTime() < drainDeadline) Thread.sleep(50);
+
+            h.report(api, sent, start, produced);
+            System.out.println();
+            metrics.registry.describe().forEach(System.out::println);
+        } finally {
+            outbound.shutdownNow();
+            spool.close();
+            offsets.close();
+            deleteRecursively(dir);
+        }
+    }
+
+    private int produce(TelegramHttpGateway gateway, int players, double chatPerMin, double joinPerMin,
+                        double deathPerMin, int seconds) throws InterruptedException {
+        Random rnd = new Random(42);
+        double chatPerTick = players * chatPerMin / 60.0 * TICK_MS / 1000.0;
+        double joinPerTick = players * joinPerMin / 60.0 * TICK_MS / 1000.0;
+        double deathPerTick = players * deathPerMin / 60.0 * TICK_MS / 1000.0;
+        double chatDue = 0, joinDue = 0, deathDue = 0;
+        int n = 0;
+
+        long tickNanos = TimeUnit.MILLISECONDS.toNanos(TICK_MS);
+        long next = System.nanoTime();
+        long end = next + TimeUnit.SECONDS.toNanos(seconds);
+        while (next < end && n < sentAt.length) {
+            chatDue += chatPerTick;
+            joinDue += joinPerTick;
+            deathDue += deathPerTick;
+            for (; chatDue >= 1 && n < sentAt.length; chatDue--, n++) {
+                send(gateway, n, ServiceEvent.CHAT, "<Player" + rnd.nextInt(players) + "> " + CHAT[rnd.nextInt(CHAT.length)]);
+            }
+            for (; joinDue >= 1 && n < sentAt.length; joinDue--, n++) {
+                send(gateway, n, ServiceEvent.JOIN_QUIT, "> Player" + rnd.nextInt(players) + (rnd.nextBoolean() ? " joined the game" : " left the game"));
+            }
+            for (; deathDue >= 1 && n < sentAt.length; deathDue--, n++) {
+                send(gateway, n, ServiceEvent.DEATH, "> Player" + rnd.nextInt(players) + DEATHS[rnd.nextInt(DEATHS.length)]);
+            }
+            next += tickNanos;
+            long sleep = next - System.nanoTime();
+            if (sleep > 0) TimeUnit.NANOSECONDS.sleep(sleep);
+        }
+        return n;
+    }
+
+    private void send(TelegramHttpGateway gateway, int n, ServiceEvent kind, String line) {
+        sentAt[n] = System.nanoTime();
+        gateway.sendService(kind, line + " #" + n);
+    }
+
+    /** Called by the fake server; a message may hold many merged lines, each ending in its tag. */
+    private synchronized void onMessage(String chatId, String text, long receivedNanos) {
+        int lineEnd = text.length();
+        while (lineEnd > 0) {
+            int lineStart = text.lastIndexOf('\n', lineEnd - 1) + 1;
+            int hash = text.lastIndexOf('#', lineEnd - 1);
+            if (hash >= lineStart) {
+                try {
+                    int n = Integer.parseInt(text.substring(hash + 1, lineEnd));
+                    if (n >= 0 && n < sentAt.length) record(n, receivedNanos);
+                } catch (NumberFormatException ignored) {
+                }
+            }
+            lineEnd = lineStart - 1;
+        }
+        lastDelivery = receivedNanos;
+    }
+
+    private void record(int n, long receivedNanos) {
+        if (delivered.get(n)) {
+            duplicates++;
+            return;
+        }
+        delivered.set(n);
+        deliveredCount++;
+        if (latencyCount == latenciesMicros.length) latenciesMicros = Arrays.copyOf(latenciesMicros, latencyCount * 2);
+        latenciesMicros[latencyCount++] = (receivedNanos - sentAt[n]) / 1000;
+    }
+
+    private synchronized int delivered() {
+        return deliveredCount;
+    }
+
+    private synchronized void report(FakeBotApi api, int sent, long start, long produced) {
+        long[] lat = Arrays.copyOf(latenciesMicros, latencyCount);
+        Arrays.sort(lat);
+        double elapsed = (Math.max(lastDelivery, produced) - start) / 1e9;
+        int lost = sent - deliveredCount;
+
+        System.out.printf(Locale.ROOT, "lines sent         %d%n", sent);
+        System.out.printf(Locale.ROOT, "lines delivered    %d (%.1f/s), duplicates %d%n", deliveredCount, deliveredCount / elapsed, duplicates);
+        System.out.printf(Locale.ROOT, "lost               %d (%.2f%%)%n", lost, sent == 0 ? 0.0 : 100.0 * lost / sent);
+        System.out.printf(Locale.ROOT, "sendMessage calls  %d (%.1f/s), injected 429 %d, 5xx %d, drops %d%n",
+                api.sendRequests.get(), api.sendRequests.get() / elapsed,
+                api.injected429.get(), api.injected5xx.get(), api.injectedDrops.get());
+        if (lat.length > 0) {
+            System.out.printf(Locale.ROOT, "latency ms         p50 %.1f, p99 %.1f, max %.1f%n",
+                    percentile(lat, 0.50) / 1000.0, percentile(lat, 0.99) / 1000.0, lat[lat.length - 1] / 1000.0);
+        }
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    private static final String[] CHAT = {
+            "hi", "anyone up for the nether?", "brb", "lol", "where is the base again? x=120 z=-40",
+            "who took my diamonds >:(", "gg", "need 3 obsidian + flint_and_steel (pls!)",
+    };
+    private static final String[] DEATHS = {
+            " was slain by Zombie", " fell from a high place", " tried to swim in lava", " was blown up by Creeper",
+    };
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> m = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) throw new IllegalArgumentException("Expected --option, got " + args[i]);
+            m.put(args[i].substring(2), args[i + 1]);
+        }
+        return m;
+    }
+
+    private static int intOpt(Map<String, String> m, String key, int def) {
+        return m.containsKey(key) ? Integer.parseInt(m.get(key)) : def;
+    }
+
+    private static double doubleOpt(Map<String, String> m, String key, double def) {
+        return m.containsKey(key) ? Double.parseDouble(m.get(key)) : def;
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(p);
+        }
+    }
+}
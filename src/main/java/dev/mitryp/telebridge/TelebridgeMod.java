@@ -5,8 +5,10 @@
 //  - Use simple dependency wiring inside the mod ctor (no DI framework).
 //  - Preserve existing features: chat out -> Telegram, /say + /online from Telegram -> MC,
 //    join/quit/death/start/stop service messages, MarkdownV2 escaping, /tglink command.
-//  - Threading: a tiny Executor for outbound HTTP; a dedicated poller thread for inbound.
-//  - Storage: JSON file for TG↔MC links via LinkRepository.
+//  - Threading: Forge handlers only publish into a lock-free ring; one scheduler thread drains it and paces
+//    async outbound HTTP; for inbound, a poller thread hands updates to a routing thread.
+//  - Storage: JSON file for TG↔MC links via LinkRepository, or a mapped hash index shared between servers;
+//    mapped append log for unsent outbound messages.
 //
 // Files below should be placed under src/main/java/dev/mitryp/telebridge/ with matching names.
 
@@ -17,21 +19,34 @@ package dev.mitryp.telebridge;
 
 import com.mojang.logging.LogUtils;
 import dev.mitryp.telebridge.application.mc.ForgeMinecraftBridge;
+import dev.mitryp.telebridge.application.mc.ServiceEventPump;
+import dev.mitryp.telebridge.application.mc.commands.TelebridgeStatsCommand;
 import dev.mitryp.telebridge.application.mc.commands.TgUnlinkCommand;
 import dev.mitryp.telebridge.application.mc.commands.TglinkCommand;
+import dev.mitryp.telebridge.application.metrics.PrometheusEndpoint;
 import dev.mitryp.telebridge.application.services.NameResolver;
+import dev.mitryp.telebridge.application.services.SenderRateLimiter;
+import dev.mitryp.telebridge.application.telegram.ClusterPoller;
 import dev.mitryp.telebridge.application.telegram.InboundCommandRouter;
 import dev.mitryp.telebridge.application.telegram.TelegramHttpGateway;
 import dev.mitryp.telebridge.application.telegram.TelegramPoller;
+import dev.mitryp.telebridge.application.telegram.TelegramWebhookServer;
 import dev.mitryp.telebridge.application.telegram.commands.OnlineCommand;
 import dev.mitryp.telebridge.application.telegram.commands.SayCommand;
 import dev.mitryp.telebridge.data.config.TelebridgeConfigHolder;
+import dev.mitryp.telebridge.data.repositories.DelegatingLinkRepository;
+import dev.mitryp.telebridge.data.repositories.FileUpdateOffsetStore;
 import dev.mitryp.telebridge.data.repositories.JsonLinkRepository;
-import dev.mitryp.telebridge.domain.interfaces.LinkRepository;
-import dev.mitryp.telebridge.domain.interfaces.MinecraftBridge;
+import dev.mitryp.telebridge.data.repositories.MappedLinkRepository;
+import dev.mitryp.telebridge.data.spool.MappedOutboundSpool;
+import dev.mitryp.telebridge.domain.interfaces.OutboundSpool;
 import dev.mitryp.telebridge.domain.interfaces.TelegramGateway;
+import dev.mitryp.telebridge.domain.interfaces.UpdateOffsetStore;
+import dev.mitryp.telebridge.domain.models.ServiceEvent;
+import dev.mitryp.telebridge.domain.models.TelebridgeConfig;
 import dev.mitryp.telebridge.domain.models.TelebridgeSpec;
 import dev.mitryp.telebridge.utils.TelebridgePaths;
+import dev.mitryp.telebridge.utils.metrics.BridgeMetrics;
 import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.event.ServerChatEvent;
 import net.minecraftforge.event.entity.living.LivingDeathEvent;
@@ -44,8 +59,12 @@ import net.minecraftforge.fml.config.ModConfig;
 import net.minecraftforge.fml.javafmlmod.FMLJavaModLoadingContext;
 import org.slf4j.Logger;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -54,109 +73,220 @@ public class TelebridgeMod {
     public static final String MODID = "telebridge";
     private static final Logger LOGGER = LogUtils.getLogger();
 
-    private final ExecutorService httpExec;
+    private final ScheduledExecutorService outboundExec;
+    private final ThreadPoolExecutor commandExec;
+    private final ThreadPoolExecutor orderedCommandExec;
+    private final BridgeMetrics metrics;
+    private final PrometheusEndpoint metricsEndpoint;
+    private final OutboundSpool spool;
+    private final UpdateOffsetStore offsets;
     private final TelegramGateway telegram;
-    private final MinecraftBridge mc;
-    private final LinkRepository links;
+    private final ServiceEventPump events;
+    private final ForgeMinecraftBridge mc;
+    private final DelegatingLinkRepository links;
     private final NameResolver nameResolver;
     private final InboundCommandRouter router;
     private final TelegramPoller poller;
+    private final ClusterPoller cluster;
+    private final TelegramWebhookServer webhook;
 
     public TelebridgeMod(FMLJavaModLoadingContext context) {
         // Load Forge config
         context.registerConfig(ModConfig.Type.COMMON, TelebridgeSpec.SPEC);
 
         // Core services
-        this.httpExec = new ThreadPoolExecutor(
-                1, 3, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(256),
-                r -> {
-                    Thread t = new Thread(r, "TeleBridge-HTTP");
-                    t.setDaemon(true);
-                    return t;
-                },
-                new ThreadPoolExecutor.DiscardOldestPolicy()
-        );
-
-        this.telegram = new TelegramHttpGateway(TelebridgeConfigHolder::get, httpExec);
-        this.mc = new ForgeMinecraftBridge();
-        this.links = new JsonLinkRepository(TelebridgePaths.linksFile());
+        // Batching and rate limiting run here; the HTTP calls themselves are async and need no pool
+        this.outboundExec = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "TeleBridge-Outbound");
+            t.setDaemon(true);
+            return t;
+        });
+
+        // Telegram commands run here, so a slow one never holds up the next getUpdates
+        this.commandExec = new ThreadPoolExecutor(2, 2, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(64), r -> {
+            Thread t = new Thread(r, "TeleBridge-Commands");
+            t.setDaemon(true);
+            return t;
+        });
+        commandExec.allowCoreThreadTimeOut(true);
+        // Commands that must keep message order, like /say, take turns on this one thread instead
+        this.orderedCommandExec = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(256), r -> {
+            Thread t = new Thread(r, "TeleBridge-Ordered");
+            t.setDaemon(true);
+            return t;
+        });
+        orderedCommandExec.allowCoreThreadTimeOut(true);
+
+        this.metrics = new BridgeMetrics();
+        this.spool = new MappedOutboundSpool(TelebridgePaths.spoolDir());
+        this.offsets = new FileUpdateOffsetStore(TelebridgePaths.offsetFile());
+        this.telegram = new TelegramHttpGateway(TelebridgeConfigHolder::get, outboundExec, spool, offsets, metrics);
+        this.events = new ServiceEventPump(TelebridgeConfigHolder::get, telegram);
+        this.events.start(outboundExec);
+        metrics.registry.gauge("telebridge_events_pending", "Server events waiting to be formatted", events::pendingCount);
+        metrics.registry.counter("telebridge_events_dropped_total", "Server events lost to a full event ring", events::droppedCount);
+        metrics.registry.counter("telebridge_events_refused_total", "Server events published after shutdown began", events::refusedCount);
+        for (ServiceEventPump.Kind k : ServiceEventPump.Kind.values()) {
+            metrics.registry.counter("telebridge_event_handler_nanos_total{kind=\"" + k.name().toLowerCase(Locale.ROOT) + "\"}",
+                    "Server-thread time spent in TeleBridge event handlers", () -> events.handlerNanos(k));
+        }
+        for (ServiceEventPump.Kind k : ServiceEventPump.Kind.values()) {
+            metrics.registry.counter("telebridge_event_handler_calls_total{kind=\"" + k.name().toLowerCase(Locale.ROOT) + "\"}",
+                    "TeleBridge event handler invocations", () -> events.handlerCalls(k));
+        }
+        this.mc = new ForgeMinecraftBridge(TelebridgeConfigHolder::get);
+        metrics.registry.gauge("telebridge_inbound_broadcasts_pending", "Telegram messages waiting for a server tick", mc::pendingCount);
+        // Switched to the shared index in onServerStarting if one is configured; the config is not loaded yet here
+        this.links = new DelegatingLinkRepository(new JsonLinkRepository(TelebridgePaths.linksFile(), metrics.linkSave));
         this.nameResolver = new NameResolver(links);
 
         // Commands available to Telegram
-        this.router = new InboundCommandRouter()
-                .register("say", new SayCommand(mc, nameResolver))
+        SenderRateLimiter sayLimiter = new SenderRateLimiter(TelebridgeConfigHolder::get);
+        this.router = new InboundCommandRouter(TelebridgeConfigHolder::get, telegram::botUsername,
+                commandExec, orderedCommandExec, mc::runOnServerThread)
+                .register("say", new SayCommand(mc, nameResolver, telegram, TelebridgeConfigHolder::get, sayLimiter))
                 .register("online", new OnlineCommand(mc, telegram));
+        metrics.registry.gauge("telebridge_commands_queued", "Telegram commands waiting for a worker",
+                () -> commandExec.getQueue().size() + orderedCommandExec.getQueue().size());
+        metrics.registry.counter("telebridge_commands_rejected_total", "Telegram commands refused by a full worker queue", router::rejectedCount);
+        metrics.registry.counter("telebridge_say_throttled_total", "/say messages over the sender's rate limit", sayLimiter::throttledCount);
+        metrics.registry.counter("telebridge_say_collapsed_total", "/say messages repeating the sender's previous one", sayLimiter::collapsedCount);
+        metrics.registry.gauge("telebridge_say_senders", "Telegram users with a tracked /say rate", sayLimiter::trackedSenders);
 
-        // Inbound poller (Telegram -> MC)
-        this.poller = new TelegramPoller(telegram, router);
+        // Inbound (Telegram -> MC): long-poll by default, webhook when configured
+        this.poller = new TelegramPoller(telegram, router, metrics);
+        this.cluster = new ClusterPoller(TelebridgeConfigHolder::get, telegram, router, metrics);
+        this.webhook = new TelegramWebhookServer(TelebridgeConfigHolder::get, offsets, router::route);
+        this.metricsEndpoint = new PrometheusEndpoint(metrics.registry);
 
         // Event bus
         MinecraftForge.EVENT_BUS.register(this);
+        MinecraftForge.EVENT_BUS.register(mc);
         MinecraftForge.EVENT_BUS.register(new TglinkCommand(links));
         MinecraftForge.EVENT_BUS.register(new TgUnlinkCommand(links));
+        MinecraftForge.EVENT_BUS.register(new TelebridgeStatsCommand(metrics.registry));
 
         LOGGER.info("[TeleBridge] Loaded. Telegram bridge {}.",
                 TelebridgeConfigHolder.get().telegramEnabled ? "ENABLED" : "DISABLED");
     }
 
     /* ===================== Forge event handlers ===================== */
+    // These run on the server thread: capture references and return, everything else happens in ServiceEventPump
     @SubscribeEvent
     public void onChat(ServerChatEvent e) {
-        var cfg = TelebridgeConfigHolder.get();
-        if (!(cfg.telegramEnabled && cfg.serviceChat && cfg.hasOutbound())) return;
-
-        String line = "<" + e.getPlayer().getName().getString() + "> " + e.getMessage().getString();
-        telegram.sendService(line);
+        long t0 = System.nanoTime();
+        events.publish(ServiceEventPump.Kind.CHAT, e.getPlayer().getName(), e.getMessage(), null, t0);
     }
 
     @SubscribeEvent
     public void onPlayerJoin(PlayerEvent.PlayerLoggedInEvent e) {
-        var cfg = TelebridgeConfigHolder.get();
-        if (cfg.telegramEnabled && cfg.serviceJoinQuit && cfg.hasOutbound()) {
-            telegram.sendService("> " + e.getEntity().getName().getString() + " joined the game");
-        }
+        long t0 = System.nanoTime();
+        events.publish(ServiceEventPump.Kind.JOIN, e.getEntity().getName(), null, null, t0);
     }
 
     @SubscribeEvent
     public void onPlayerQuit(PlayerEvent.PlayerLoggedOutEvent e) {
-        var cfg = TelebridgeConfigHolder.get();
-        if (cfg.telegramEnabled && cfg.serviceJoinQuit && cfg.hasOutbound()) {
-            telegram.sendService("> " + e.getEntity().getName().getString() + " left the game");
-        }
+        long t0 = System.nanoTime();
+        events.publish(ServiceEventPump.Kind.QUIT, e.getEntity().getName(), null, null, t0);
     }
 
     @SubscribeEvent
     public void onDeath(LivingDeathEvent e) {
-        var cfg = TelebridgeConfigHolder.get();
-        if (!(cfg.telegramEnabled && cfg.serviceDeaths && cfg.hasOutbound())) return;
+        long t0 = System.nanoTime();
         if (!(e.getEntity() instanceof net.minecraft.server.level.ServerPlayer sp)) return;
+        // Building the message walks the combat log; skip it when it would be thrown away
+        if (!TelebridgeConfigHolder.get().serviceDeaths) return;
 
-        String deathMsg = sp.getCombatTracker().getDeathMessage().getString();
-        if (deathMsg.isBlank()) {
-            String cause = e.getSource() != null ? e.getSource().getMsgId() : "unknown";
-            deathMsg = sp.getName().getString() + " died (" + cause + ")";
-        }
-        telegram.sendService("> " + deathMsg);
+        // The combat tracker is reset right after this event, so the message has to be built here
+        String cause = e.getSource() != null ? e.getSource().getMsgId() : "unknown";
+        events.publish(ServiceEventPump.Kind.DEATH, sp.getName(), sp.getCombatTracker().getDeathMessage(), cause, t0);
     }
 
     @SubscribeEvent
     public void onServerStarting(ServerStartingEvent e) {
         var cfg = TelebridgeConfigHolder.get();
+        if (cfg.metricsPrometheusEnabled) {
+            try {
+                metricsEndpoint.start(cfg.metricsPrometheusBindAddress, cfg.metricsPrometheusPort);
+            } catch (IOException ex) {
+                LOGGER.error("[TeleBridge] Could not start metrics endpoint.", ex);
+            }
+        }
+        if (!cfg.linksSharedFile.isBlank()) useSharedLinks(cfg);
+        telegram.start();
         if (cfg.telegramEnabled && cfg.serviceStartStop && cfg.hasOutbound()) {
-            telegram.sendService("> Server starting");
+            telegram.sendService(ServiceEvent.START_STOP, "> Server starting");
         }
-        if (cfg.inboundEnabled) {
+        if (cfg.hasWebhook()) {
+            startWebhook(cfg);
+        } else if (cfg.inboundEnabled) {
+            if (cfg.webhookEnabled) LOGGER.warn("[TeleBridge] Webhook needs public_url and secret, falling back to polling.");
+            // getUpdates is refused while a webhook from an earlier run is still registered
+            telegram.deleteWebhook();
+            startPolling(cfg);
+        }
+    }
+
+    private void useSharedLinks(TelebridgeConfig cfg) {
+        if (links.delegate() instanceof MappedLinkRepository) return;
+        try {
+            // Fold the journal into telebridge-links.json first, it is what this server merges into the index
+            links.flush();
+            links.use(new MappedLinkRepository(Path.of(cfg.linksSharedFile), TelebridgePaths.linksFile(), metrics.linkSave));
+        } catch (IOException ex) {
+            LOGGER.error("[TeleBridge] Could not open the shared link index, keeping links in this server only.", ex);
+        }
+    }
+
+    private void startWebhook(TelebridgeConfig cfg) {
+        try {
+            webhook.start();
+            telegram.registerWebhook(cfg.webhookPublicUrl, cfg.webhookSecret);
+        } catch (IOException ex) {
+            LOGGER.error("[TeleBridge] Could not start webhook listener, falling back to polling.", ex);
+            telegram.deleteWebhook();
+            startPolling(cfg);
+        }
+    }
+
+    private void startPolling(TelebridgeConfig cfg) {
+        if (!cfg.hasCluster()) {
             poller.start();
+            return;
+        }
+        try {
+            cluster.start();
+        } catch (IOException ex) {
+            // Polling alone would fight the cluster's leader for getUpdates
+            LOGGER.error("[TeleBridge] Could not open the cluster directory, Telegram commands are off.", ex);
         }
     }
 
     @SubscribeEvent
     public void onServerStopping(ServerStoppingEvent e) {
         var cfg = TelebridgeConfigHolder.get();
+        // No new inbound work: cancel the long poll; commands already running may still reply
+        poller.stop();
+        cluster.stop();
+        webhook.stop();
+        commandExec.shutdown();
+        orderedCommandExec.shutdown();
+
+        // Whatever players did before the stop goes out ahead of the stop notice; the kicks that follow are refused
+        events.close();
+        events.drain();
+        LOGGER.info("[TeleBridge] Server-thread cost per event: {}; dropped {}.",
+                events.handlerTimings(), events.droppedCount());
         if (cfg.telegramEnabled && cfg.serviceStartStop && cfg.hasOutbound()) {
-            telegram.sendService("> Server stopping");
+            telegram.sendService(ServiceEvent.START_STOP, "> Server stopping");
         }
-        poller.stop();
-        httpExec.shutdownNow();
+        // Bounded: sends in batches until the queues are empty or the deadline passes, then reports what is left
+        telegram.shutdown(cfg.outboundShutdownDrainMs);
+        metricsEndpoint.stop();
+        offsets.close();
+        links.flush();
+        outboundExec.shutdownNow();
+        // Anything still queued stays in the spool and is resent on the next start
+        spool.close();
     }
 }
@@ -1,27 +1,108 @@
 package dev.mitryp.telebridge.application.mc;
 
+import dev.mitryp.telebridge.domain.interfaces.ConfigProvider;
 import dev.mitryp.telebridge.domain.interfaces.MinecraftBridge;
 import net.minecraft.network.chat.Component;
 import net.minecraft.server.MinecraftServer;
-import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.entity.player.PlayerEvent;
+import net.minecraftforge.event.server.ServerStoppedEvent;
+import net.minecraftforge.event.server.ServerStoppingEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.server.ServerLifecycleHooks;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Inbound broadcasts are queued from any thread and shown once per server tick: at most
+ * {@code broadcasts_per_tick} lines, joined into one system message so the player list is walked once per tick
+ * rather than once per line.
+ * <p>
+ * The online roster is kept from login/logout events as an immutable list that is replaced on every change, so
+ * {@link #onlineNames()} is a volatile read from any thread and a changed roster is a different list instance.
+ */
 public final class ForgeMinecraftBridge implements MinecraftBridge {
+    private final ConfigProvider cfg;
+    private final Queue<String> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final StringBuilder batch = new StringBuilder();
+    private volatile List<String> roster = List.of();
+
+    public ForgeMinecraftBridge(ConfigProvider cfg) {
+        this.cfg = cfg;
+    }
+
     @Override
     public void broadcast(String message) {
+        if (ServerLifecycleHooks.getCurrentServer() == null) return;
+        pending.add(message);
+        pendingCount.incrementAndGet();
+    }
+
+    /** Runs {@code task} on the server thread; dropped when no server is running. */
+    public void runOnServerThread(Runnable task) {
         var server = ServerLifecycleHooks.getCurrentServer();
-        if (server == null) return;
-        server.execute(() -> server.getPlayerList().broadcastSystemMessage(Component.literal(message), false));
+        if (server != null) server.execute(task);
+    }
+
+    public int pendingCount() {
+        return pendingCount.get();
+    }
+
+    @SubscribeEvent
+    public void onServerTick(TickEvent.ServerTickEvent e) {
+        if (e.phase != TickEvent.Phase.END || pendingCount.get() == 0) return;
+        drain(e.getServer(), cfg.get().inboundBroadcastsPerTick);
+    }
+
+    private void drain(MinecraftServer server, int max) {
+        batch.setLength(0);
+        String line;
+        for (int n = 0; n < max && (line = pending.poll()) != null; n++) {
+            pendingCount.decrementAndGet();
+            if (batch.length() > 0) batch.append('\n');
+            batch.append(line);
+        }
+        if (batch.length() > 0) server.getPlayerList().broadcastSystemMessage(Component.literal(batch.toString()), false);
+    }
+
+    // Roster handlers run on the server thread, its only writer
+    @SubscribeEvent
+    public void onPlayerJoin(PlayerEvent.PlayerLoggedInEvent e) {
+        List<String> next = new ArrayList<>(roster);
+        next.add(e.getEntity().getName().getString());
+        roster = List.copyOf(next);
+    }
+
+    @SubscribeEvent
+    public void onPlayerQuit(PlayerEvent.PlayerLoggedOutEvent e) {
+        List<String> next = new ArrayList<>(roster);
+        if (next.remove(e.getEntity().getName().getString())) roster = List.copyOf(next);
+    }
+
+    // No more ticks will drain these; a later server in the same JVM must not show them
+    @SubscribeEvent
+    public void onServerStopping(ServerStoppingEvent e) {
+        discardPending();
+    }
+
+    @SubscribeEvent
+    public void onServerStopped(ServerStoppedEvent e) {
+        roster = List.of();
+        // Lines from commands that were still running while the server stopped
+        discardPending();
+    }
+
+    private void discardPending() {
+        while (pending.poll() != null) pendingCount.decrementAndGet();
     }
 
     @Override
     public List<String> onlineNames() {
-        MinecraftServer srv = ServerLifecycleHooks.getCurrentServer();
-        if (srv == null) return List.of();
-        return srv.getPlayerList().getPlayers().stream()
-                .map(ServerPlayer::getName).map(Component::getString).collect(Collectors.toList());
+        return roster;
     }
 }
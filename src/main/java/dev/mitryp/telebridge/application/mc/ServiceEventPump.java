@@ -0,0 +1,172 @@
+package dev.mitryp.telebridge.application.mc;
+
+import com.mojang.logging.LogUtils;
+import dev.mitryp.telebridge.domain.interfaces.ConfigProvider;
+import dev.mitryp.telebridge.domain.interfaces.TelegramGateway;
+import dev.mitryp.telebridge.domain.models.PlayerActivity;
+import dev.mitryp.telebridge.domain.models.ServiceEvent;
+import dev.mitryp.telebridge.utils.MpscRing;
+import net.minecraft.network.chat.Component;
+import org.slf4j.Logger;
+
+import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Carries chat/join/quit/death events from the server thread to Telegram.
+ * <p>
+ * Forge handlers only copy component references into a preallocated ring slot. Reading the config, flattening
+ * components, formatting and dispatch happen on the outbound thread, which drains the ring every few milliseconds.
+ * A full ring drops the event rather than stalling the tick.
+ */
+public final class ServiceEventPump {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final int CAPACITY = 4096;
+    private static final long DRAIN_INTERVAL_MS = 10;
+
+    public enum Kind {CHAT, JOIN, QUIT, DEATH}
+
+    static final class Slot {
+        Kind kind;
+        Component subject;
+        Component body;
+        String cause;
+    }
+
+    private final ConfigProvider cfg;
+    private final TelegramGateway telegram;
+    private final MpscRing<Slot> ring = new MpscRing<>(CAPACITY, Slot::new);
+    private final Consumer<Slot> dispatch = this::dispatch;
+    private final LongAdder[] handlerNanos = new LongAdder[Kind.values().length];
+    private final LongAdder[] handlerCalls = new LongAdder[Kind.values().length];
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder refused = new LongAdder();
+    private volatile boolean closed;
+
+    public ServiceEventPump(ConfigProvider cfg, TelegramGateway telegram) {
+        this.cfg = cfg;
+        this.telegram = telegram;
+        for (int i = 0; i < handlerNanos.length; i++) {
+            handlerNanos[i] = new LongAdder();
+            handlerCalls[i] = new LongAdder();
+        }
+    }
+
+    public void start(ScheduledExecutorService exec) {
+        exec.scheduleWithFixedDelay(this::drain, DRAIN_INTERVAL_MS, DRAIN_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Called from Forge handlers. {@code startNanos} is the handler's own entry time, so the recorded cost covers
+     * everything the handler did on the server thread.
+     */
+    public void publish(Kind kind, Component subject, Component body, String cause, long startNanos) {
+        if (closed) {
+            refused.increment();
+            return;
+        }
+        long pos = ring.claim();
+        if (pos < 0) {
+            dropped.increment();
+        } else {
+            Slot s = ring.slot(pos);
+            s.kind = kind;
+            s.subject = subject;
+            s.body = body;
+            s.cause = cause;
+            ring.publish(pos);
+        }
+        handlerNanos[kind.ordinal()].add(System.nanoTime() - startNanos);
+        handlerCalls[kind.ordinal()].increment();
+    }
+
+    /** Dispatches everything published so far. Safe to call from any thread; consumers are serialized. */
+    public synchronized void drain() {
+        while (ring.drain(dispatch, CAPACITY) > 0) {
+            // keep going until the producers are caught up
+        }
+    }
+
+    /** Refuses events from now on, e.g. the quits of players kicked by a stopping server; {@link #drain} still runs. */
+    public void close() {
+        closed = true;
+    }
+
+    /** Events published after {@link #close}. */
+    public long refusedCount() {
+        return refused.sum();
+    }
+
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    public long pendingCount() {
+        return ring.size();
+    }
+
+    /** Server-thread time spent in {@code kind}'s handler so far. */
+    public long handlerNanos(Kind kind) {
+        return handlerNanos[kind.ordinal()].sum();
+    }
+
+    public long handlerCalls(Kind kind) {
+        return handlerCalls[kind.ordinal()].sum();
+    }
+
+    /** Average server-thread time per handler, e.g. {@code chat 412ns (n=37)}. */
+    public String handlerTimings() {
+        StringBuilder sb = new StringBuilder();
+        for (Kind k : Kind.values()) {
+            long n = handlerCalls[k.ordinal()].sum();
+            if (n == 0) continue;
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(k.name().toLowerCase(Locale.ROOT)).append(' ')
+                    .append(handlerNanos[k.ordinal()].sum() / n).append("ns (n=").append(n).append(')');
+        }
+        return sb.length() == 0 ? "no events" : sb.toString();
+    }
+
+    private void dispatch(Slot s) {
+        try {
+            var c = cfg.get();
+            if (!(c.telegramEnabled && c.hasOutbound())) return;
+            switch (s.kind) {
+                case CHAT -> {
+                    if (c.serviceChat) telegram.sendService(ServiceEvent.CHAT, "<" + s.subject.getString() + "> " + s.body.getString());
+                }
+                case JOIN -> {
+                    if (c.serviceJoinQuit) {
+                        String name = s.subject.getString();
+                        telegram.sendActivity(PlayerActivity.JOIN, name, "> " + name + " joined the game");
+                    }
+                }
+                case QUIT -> {
+                    if (c.serviceJoinQuit) {
+                        String name = s.subject.getString();
+                        telegram.sendActivity(PlayerActivity.QUIT, name, "> " + name + " left the game");
+                    }
+                }
+                case DEATH -> {
+                    if (!c.serviceDeaths) return;
+                    String deathMsg = s.body.getString();
+                    if (deathMsg.isBlank()) deathMsg = s.subject.getString() + " died (" + s.cause + ")";
+                    telegram.sendActivity(PlayerActivity.DEATH, s.subject.getString(), "> " + deathMsg);
+                }
+            }
+        } catch (RejectedExecutionException ignored) {
+            // Outbound side is shutting down
+        } catch (RuntimeException e) {
+            LOGGER.warn("[TeleBridge] Failed to forward server event", e);
+        } finally {
+            // Don't pin player/world objects through a reused slot
+            s.subject = null;
+            s.body = null;
+            s.cause = null;
+        }
+    }
+}
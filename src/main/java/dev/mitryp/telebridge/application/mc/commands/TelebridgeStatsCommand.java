@@ -0,0 +1,34 @@
+package dev.mitryp.telebridge.application.mc.commands;
+
+import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+import dev.mitryp.telebridge.TelebridgeMod;
+import dev.mitryp.telebridge.utils.metrics.MetricsRegistry;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.network.chat.Component;
+import net.minecraftforge.event.RegisterCommandsEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+/** {@code /telebridge stats}: every bridge metric, one line each. Operators only. */
+@Mod.EventBusSubscriber(modid = TelebridgeMod.MODID)
+public final class TelebridgeStatsCommand {
+    private final MetricsRegistry registry;
+
+    public TelebridgeStatsCommand(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @SubscribeEvent
+    public void register(RegisterCommandsEvent e) {
+        e.getDispatcher().register(
+                LiteralArgumentBuilder.<CommandSourceStack>literal("telebridge")
+                        .requires(src -> src.hasPermission(2))
+                        .then(LiteralArgumentBuilder.<CommandSourceStack>literal("stats")
+                                .executes(ctx -> {
+                                    String text = "TeleBridge stats:\n" + String.join("\n", registry.describe());
+                                    ctx.getSource().sendSuccess(() -> Component.literal(text), false);
+                                    return 1;
+                                }))
+        );
+    }
+}
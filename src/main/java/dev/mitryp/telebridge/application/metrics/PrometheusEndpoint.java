@@ -0,0 +1,68 @@
+package dev.mitryp.telebridge.application.metrics;
+
+import com.mojang.logging.LogUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dev.mitryp.telebridge.utils.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/** Serves the registry as Prometheus text on {@code GET /metrics}. Rendering happens per scrape, off the server thread. */
+public final class PrometheusEndpoint {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    private final MetricsRegistry registry;
+    private HttpServer server;
+    private ExecutorService exec;
+
+    public PrometheusEndpoint(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    public synchronized void start(String bindAddress, int port) throws IOException {
+        if (server != null) return;
+        exec = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "TeleBridge-Metrics");
+            t.setDaemon(true);
+            return t;
+        });
+        server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+        server.createContext("/metrics", this::handle);
+        server.setExecutor(exec);
+        server.start();
+        LOGGER.info("[TeleBridge] Metrics at http://{}:{}/metrics", bindAddress, port);
+    }
+
+    public synchronized void stop() {
+        if (server == null) return;
+        server.stop(0);
+        exec.shutdownNow();
+        server = null;
+        exec = null;
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        try {
+            if (!"GET".equals(ex.getRequestMethod())) {
+                ex.sendResponseHeaders(405, -1);
+                return;
+            }
+            StringBuilder sb = new StringBuilder(4096);
+            registry.writePrometheus(sb);
+            byte[] body = sb.toString().getBytes(StandardCharsets.UTF_8);
+            ex.getResponseHeaders().add("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            ex.sendResponseHeaders(200, body.length);
+            try (OutputStream out = ex.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            ex.close();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package dev.mitryp.telebridge.application.services;
+
+import dev.mitryp.telebridge.domain.interfaces.ConfigProvider;
+import dev.mitryp.telebridge.domain.models.TelebridgeConfig;
+import dev.mitryp.telebridge.utils.TokenBucket;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-Telegram-user flood control for inbound messages: a token bucket ({@code say_burst}, {@code say_per_minute})
+ * plus collapsing of a message identical to the sender's previous one.
+ * <p>
+ * Senders live in an access-ordered map capped at {@link #MAX_SENDERS}; the least recently active one is evicted,
+ * which at worst hands a returning spammer a fresh burst. A config reload starts every sender over.
+ */
+public final class SenderRateLimiter {
+    public enum Verdict {
+        ALLOW,
+        /** Same text as the sender's previous message inside {@link #REPEAT_WINDOW_NANOS}. */
+        REPEAT,
+        /** Over the rate; the sender should be told, which {@link #shouldNotify} paces. */
+        THROTTLED
+    }
+
+    private static final int MAX_SENDERS = 4096;
+    private static final long REPEAT_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final long NOTIFY_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final ConfigProvider cfg;
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder collapsed = new LongAdder();
+    private final Map<Long, Sender> senders = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Sender> eldest) {
+            return size() > MAX_SENDERS;
+        }
+    };
+    private TelebridgeConfig sendersFor;
+
+    public SenderRateLimiter(ConfigProvider cfg) {
+        this.cfg = cfg;
+    }
+
+    public synchronized Verdict check(long userId, String text, long now) {
+        TelebridgeConfig c = cfg.get();
+        if (c != sendersFor) {
+            senders.clear();
+            sendersFor = c;
+        }
+        Sender s = senders.get(userId);
+        if (s == null) {
+            s = new Sender(new TokenBucket(c.inboundSayBurst, c.inboundSayPerMinute / 60d));
+            senders.put(userId, s);
+        }
+
+        // A repeat costs no token, but does not refresh the window either, so a slow repeater still gets through
+        if (text.equals(s.lastText) && now - s.lastAt < REPEAT_WINDOW_NANOS) {
+            collapsed.increment();
+            return Verdict.REPEAT;
+        }
+        if (!s.bucket.tryTake(now)) {
+            throttled.increment();
+            return Verdict.THROTTLED;
+        }
+        s.lastText = text;
+        s.lastAt = now;
+        return Verdict.ALLOW;
+    }
+
+    /** True at most once per {@link #NOTIFY_INTERVAL_NANOS} per sender. */
+    public synchronized boolean shouldNotify(long userId, long now) {
+        Sender s = senders.get(userId);
+        if (s == null || (s.notified && now - s.notifiedAt < NOTIFY_INTERVAL_NANOS)) return false;
+        s.notified = true;
+        s.notifiedAt = now;
+        return true;
+    }
+
+    public long throttledCount() {
+        return throttled.sum();
+    }
+
+    public long collapsedCount() {
+        return collapsed.sum();
+    }
+
+    public synchronized int trackedSenders() {
+        return senders.size();
+    }
+
+    private static final class Sender {
+        final TokenBucket bucket;
+        String lastText;
+        long lastAt;
+        boolean notified;
+        long notifiedAt;
+
+        Sender(TokenBucket bucket) {
+            this.bucket = bucket;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package dev.mitryp.telebridge.application.telegram;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import dev.mitryp.telebridge.domain.models.Destination;
+import dev.mitryp.telebridge.domain.models.OutboundMessage;
+import dev.mitryp.telebridge.domain.models.OutboundPriority;
+import dev.mitryp.telebridge.domain.models.PlayerActivity;
+
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+
+/**
+ * Folds join/quit/death events into one "activity" message per destination and window, edited in place with
+ * editMessageText as events arrive. A new message is started when the window ends or the next event would push the
+ * text past {@link OutboundBatcher#MAX_MESSAGE_CHARS}.
+ * <p>
+ * Each message has at most one request (the send or an edit) in flight. Events arriving meanwhile only mark it
+ * dirty, and edits are spaced at least {@link #MIN_EDIT_INTERVAL_NANOS} apart, so a storm costs a bounded number
+ * of calls per window instead of one per event. Digest messages are not spooled: after a crash the events are gone.
+ */
+public final class ActivityDigest {
+    private static final long MIN_EDIT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final ScheduledExecutorService exec;
+    private final IntSupplier windowSeconds;
+    private final Consumer<OutboundMessage> submit;
+    private final Map<Destination, Window> current = new HashMap<>();
+    /** Requests in flight, by the instance handed to the scheduler. */
+    private final Map<OutboundMessage, Window> inFlight = new IdentityHashMap<>();
+
+    public ActivityDigest(ScheduledExecutorService exec, IntSupplier windowSeconds, Consumer<OutboundMessage> submit) {
+        this.exec = exec;
+        this.windowSeconds = windowSeconds;
+        this.submit = submit;
+    }
+
+    /** @param line the plain line that would have been sent without the digest, e.g. a death message */
+    public synchronized void record(Destination d, PlayerActivity kind, String player, String line) {
+        long now = System.nanoTime();
+        Window w = current.get(d);
+        if (w == null || now - w.startedAt >= TimeUnit.SECONDS.toNanos(windowSeconds.getAsInt())) {
+            w = new Window(d, now);
+            current.put(d, w);
+        }
+        w.add(kind, player, line);
+        if (w.render().length() > OutboundBatcher.MAX_MESSAGE_CHARS && w.events > 1) {
+            w.undo(kind);
+            w = new Window(d, now);
+            current.put(d, w);
+            w.add(kind, player, line);
+        }
+        pump(w, now);
+    }
+
+    /** Sends pending edits now instead of waiting out the edit interval; used before shutdown. */
+    public synchronized void flush() {
+        long now = System.nanoTime();
+        for (Window w : current.values()) {
+            if (w.pendingEdit != null) {
+                w.pendingEdit.cancel(false);
+                w.pendingEdit = null;
+            }
+            w.lastRequestAt = now - MIN_EDIT_INTERVAL_NANOS;
+            pump(w, now);
+        }
+    }
+
+    /**
+     * Called by the scheduler for every settled digest request, on its single {@code exec} thread while it still holds
+     * its own monitor. The work is queued to run on {@code exec} after that callback returns, so the digest lock is
+     * never taken inside the scheduler's and locks are only ever taken digest first, then scheduler.
+     */
+    public void onSettled(OutboundMessage m, HttpResponse<String> res) {
+        try {
+            exec.execute(() -> settled(m, res));
+        } catch (RejectedExecutionException ignored) {
+            // Shutting down
+        }
+    }
+
+    private synchronized void settled(OutboundMessage m, HttpResponse<String> res) {
+        Window w = inFlight.remove(m);
+        if (w == null) return;
+        long now = System.nanoTime();
+        w.requestInFlight = false;
+        w.lastRequestAt = now;
+        int code = res != null ? res.statusCode() : -1;
+        if (code / 100 == 2 || m.editMessageId != null && code == 400 && res.body().contains("message is not modified")) {
+            w.sentText = m.text;
+            if (w.messageId == null) w.messageId = messageId(res);
+        } else if (m.editMessageId != null && code / 100 == 4) {
+            // The message is gone or can no longer be edited, and the same edit would fail again: start a new one
+            w.messageId = null;
+            w.sentText = null;
+        }
+        // A failed first send leaves messageId null, so the next pump starts the message over
+        pump(w, now);
+    }
+
+    private void pump(Window w, long now) {
+        if (w.requestInFlight || w.pendingEdit != null) return;
+        String text = w.render();
+        if (text.equals(w.sentText)) return;
+
+        OutboundMessage m;
+        if (w.messageId == null) {
+            m = new OutboundMessage(w.destination.chatId, text, null, w.destination.threadId, OutboundPriority.DIGEST);
+        } else {
+            long wait = w.lastRequestAt + MIN_EDIT_INTERVAL_NANOS - now;
+            if (wait > 0) {
+                w.pendingEdit = schedule(w, wait);
+                return;
+            }
+            m = OutboundMessage.edit(w.destination.chatId, w.destination.threadId, w.messageId, text, OutboundPriority.DIGEST);
+        }
+        w.requestInFlight = true;
+        inFlight.put(m, w);
+        submit.accept(m);
+    }
+
+    private ScheduledFuture<?> schedule(Window w, long delayNanos) {
+        try {
+            return exec.schedule(() -> {
+                synchronized (this) {
+                    w.pendingEdit = null;
+                    pump(w, System.nanoTime());
+                }
+            }, delayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+    }
+
+    private static Integer messageId(HttpResponse<String> res) {
+        try {
+            JsonObject result = JsonParser.parseString(res.body()).getAsJsonObject().getAsJsonObject("result");
+            return result.get("message_id").getAsInt();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static final class Window {
+        final Destination destination;
+        final long startedAt;
+        final List<String> joined = new ArrayList<>();
+        final List<String> left = new ArrayList<>();
+        final List<String> deaths = new ArrayList<>();
+        int events;
+        Integer messageId;
+        String sentText;
+        boolean requestInFlight;
+        long lastRequestAt;
+        ScheduledFuture<?> pendingEdit;
+        private String rendered;
+
+        Window(Destination destination, long startedAt) {
+            this.destination = destination;
+            this.startedAt = startedAt;
+        }
+
+        void add(PlayerActivity kind, String player, String line) {
+            switch (kind) {
+                case JOIN -> joined.add(player);
+                case QUIT -> left.add(player);
+                case DEATH -> deaths.add(line);
+            }
+            events++;
+            rendered = null;
+        }
+
+        void undo(PlayerActivity kind) {
+            List<String> list = kind == PlayerActivity.JOIN ? joined : kind == PlayerActivity.QUIT ? left : deaths;
+            list.remove(list.size() - 1);
+            events--;
+            rendered = null;
+        }
+
+        /** e.g. "> +12 joined, −3 left, 1 died" followed by the names and death messages, one quoted line each. */
+        String render() {
+            if (rendered != null) return rendered;
+            StringBuilder sb = new StringBuilder("> ");
+            int headerStart = sb.length();
+            if (!joined.isEmpty()) sb.append('+').append(joined.size()).append(" joined");
+            if (!left.isEmpty()) sb.append(sb.length() > headerStart ? ", " : "").append('−').append(left.size()).append(" left");
+            if (!deaths.isEmpty()) sb.append(sb.length() > headerStart ? ", " : "").append(deaths.size()).append(" died");
+            if (!joined.isEmpty()) sb.append("\n> Joined: ").append(String.join(", ", joined));
+            if (!left.isEmpty()) sb.append("\n> Left: ").append(String.join(", ", left));
+            for (String death : deaths) sb.append('\n').append(death);
+            rendered = sb.toString();
+            return rendered;
+        }
+    }
+}
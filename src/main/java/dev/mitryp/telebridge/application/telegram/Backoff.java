@@ -0,0 +1,44 @@
+package dev.mitryp.telebridge.application.telegram;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retry delays for a poll loop: doubling from {@code baseMs} up to {@code maxMs}, each drawn at random from the upper
+ * half of its step so that servers cut off by the same outage do not all retry in the same instant.
+ */
+final class Backoff {
+    private final long baseMs;
+    private final long maxMs;
+    private int failures;
+
+    Backoff(long baseMs, long maxMs) {
+        this.baseMs = baseMs;
+        this.maxMs = maxMs;
+    }
+
+    /** True from the first failure until the next success. */
+    boolean failing() {
+        return failures > 0;
+    }
+
+    void succeeded() {
+        failures = 0;
+    }
+
+    /** @return how long to wait before the next attempt */
+    long failed() {
+        long step = Math.min(maxMs, baseMs << Math.min(failures, 20));
+        failures++;
+        return step / 2 + ThreadLocalRandom.current().nextLong(step / 2 + 1);
+    }
+
+    /** Like {@link #failed()}, but waits exactly as long as Telegram asked if {@code cause} is a 429 with retry_after. */
+    long failed(Exception cause) {
+        long delay = failed();
+        if (cause instanceof TelegramApiException api && api.retryAfterSeconds > 0) {
+            return TimeUnit.SECONDS.toMillis(api.retryAfterSeconds);
+        }
+        return delay;
+    }
+}
@@ -0,0 +1,131 @@
+package dev.mitryp.telebridge.application.telegram;
+
+import com.mojang.logging.LogUtils;
+import dev.mitryp.telebridge.data.cluster.FileLease;
+import dev.mitryp.telebridge.data.cluster.MappedUpdateQueue;
+import dev.mitryp.telebridge.domain.interfaces.ConfigProvider;
+import dev.mitryp.telebridge.domain.interfaces.TelegramGateway;
+import dev.mitryp.telebridge.utils.metrics.BridgeMetrics;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Inbound for several servers on one bot token, which Telegram allows only one getUpdates consumer. The server
+ * holding the lease in {@code telegram.inbound.cluster.dir} long-polls and appends each message to a shared queue;
+ * every server, the leader included, reads the queue and routes what it finds, and the router keeps only commands
+ * addressed to no one in particular or to this server's instance name.
+ * <p>
+ * The OS drops a dead leader's lock, and followers retry it every {@link #ACQUIRE_INTERVAL_NANOS}. The new leader
+ * resumes from the getUpdates offset the old one last recorded; at most the batch in hand when it died is shown twice.
+ */
+public final class ClusterPoller {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final long ACQUIRE_INTERVAL_NANOS = 1_000_000_000L;
+    private static final long FOLLOW_INTERVAL_MS = 50;
+    private static final long STOP_TIMEOUT_MS = 2000;
+    private static final long BACKOFF_BASE_MS = 500;
+    private static final long BACKOFF_MAX_MS = 30_000;
+
+    private final ConfigProvider cfg;
+    private final TelegramGateway tg;
+    private final InboundCommandRouter router;
+    private final BridgeMetrics metrics;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final LongAdder takeovers = new LongAdder();
+    private volatile boolean leader;
+    private volatile MappedUpdateQueue queue;
+    private FileLease lease;
+    private Thread thread;
+
+    public ClusterPoller(ConfigProvider cfg, TelegramGateway tg, InboundCommandRouter router, BridgeMetrics metrics) {
+        this.cfg = cfg;
+        this.tg = tg;
+        this.router = router;
+        this.metrics = metrics;
+
+        var r = metrics.registry;
+        r.gauge("telebridge_cluster_leader", "1 while this server polls Telegram for the cluster", () -> leader ? 1 : 0);
+        r.counter("telebridge_cluster_takeovers_total", "Times this server became the cluster's poller", takeovers::sum);
+        r.counter("telebridge_cluster_lapped_total", "Times this server fell a lap behind the shared update queue",
+                () -> queue == null ? 0 : queue.lostCount());
+    }
+
+    public void start() throws IOException {
+        if (running.get()) return;
+        Path dir = Path.of(cfg.get().inboundClusterDir);
+        Files.createDirectories(dir);
+        queue = new MappedUpdateQueue(dir.resolve("updates.queue"));
+        lease = new FileLease(dir.resolve("leader.lock"));
+        running.set(true);
+        thread = new Thread(this::loop, "TeleBridge-Cluster");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Cancels the poll in flight and waits up to {@link #STOP_TIMEOUT_MS} for the thread to finish. */
+    public void stop() {
+        running.set(false);
+        Thread t = thread;
+        thread = null;
+        if (t == null) return;
+        t.interrupt();
+        try {
+            t.join(STOP_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (t.isAlive()) LOGGER.warn("[TeleBridge] {} did not stop within {} ms", t.getName(), STOP_TIMEOUT_MS);
+    }
+
+    private void loop() {
+        MappedUpdateQueue q = queue;
+        long cursor = q.tail();
+        long lastTry = System.nanoTime() - ACQUIRE_INTERVAL_NANOS;
+        var backoff = new Backoff(BACKOFF_BASE_MS, BACKOFF_MAX_MS);
+        try {
+            while (running.get()) {
+                long now = System.nanoTime();
+                if (!leader && now - lastTry >= ACQUIRE_INTERVAL_NANOS) {
+                    lastTry = now;
+                    if (lease.tryAcquire()) takeOver(q);
+                }
+                try {
+                    if (leader) {
+                        if (tg.pollOnce(0, -1, q::publish) == TelegramGateway.INBOUND_OFF) {
+                            Thread.sleep(FOLLOW_INTERVAL_MS);
+                        } else {
+                            q.setUpdateOffset(tg.updateOffset());
+                            backoff.succeeded();
+                        }
+                    } else {
+                        Thread.sleep(FOLLOW_INTERVAL_MS);
+                    }
+                } catch (InterruptedException ie) { /* stopping */ } catch (Exception ex) {
+                    metrics.pollErrors.increment();
+                    if (!backoff.failing()) LOGGER.warn("[TeleBridge] getUpdates failed, retrying with backoff: {}", ex.toString());
+                    try {
+                        Thread.sleep(backoff.failed(ex));
+                    } catch (InterruptedException ignored) {
+                    }
+                }
+                cursor = q.read(cursor, router::route);
+            }
+        } finally {
+            leader = false;
+            lease.release();
+            q.close();
+        }
+    }
+
+    private void takeOver(MappedUpdateQueue q) {
+        tg.seekUpdates(q.updateOffset());
+        leader = true;
+        takeovers.increment();
+        LOGGER.info("[TeleBridge] Polling Telegram for the cluster as {}", cfg.get().inboundClusterInstance);
+    }
+}
@@ -0,0 +1,24 @@
+package dev.mitryp.telebridge.application.telegram;
+
+import dev.mitryp.telebridge.domain.interfaces.UpdateOffsetStore;
+import dev.mitryp.telebridge.domain.models.TelegramInboundMessage;
+
+import java.util.function.Consumer;
+
+/** Delivers each update at most once across restarts, whichever transport it arrived on. */
+final class DedupingSink implements UpdatesParser.UpdateSink {
+    private final UpdateOffsetStore offsets;
+    private final Consumer<TelegramInboundMessage> consumer;
+
+    DedupingSink(UpdateOffsetStore offsets, Consumer<TelegramInboundMessage> consumer) {
+        this.offsets = offsets;
+        this.consumer = consumer;
+    }
+
+    @Override
+    public void accept(long updateId, TelegramInboundMessage msgOrNull) {
+        if (offsets.isSeen(updateId)) return;
+        if (msgOrNull != null) consumer.accept(msgOrNull);
+        offsets.markProcessed(updateId);
+    }
+}
@@ -1,33 +1,152 @@
 package dev.mitryp.telebridge.application.telegram;
 
-import dev.mitryp.telebridge.data.config.TelebridgeConfigHolder;
+import com.mojang.logging.LogUtils;
+import dev.mitryp.telebridge.domain.interfaces.ConfigProvider;
 import dev.mitryp.telebridge.domain.interfaces.TelegramCommand;
+import dev.mitryp.telebridge.domain.models.TelebridgeConfig;
 import dev.mitryp.telebridge.domain.models.TelegramInboundMessage;
+import org.slf4j.Logger;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
+/**
+ * Matches {@code <prefix><command>[@<bot or instance>] [args]} and hands the command to {@code workers}, to the
+ * single-threaded {@code ordered} when it {@linkplain TelegramCommand#ordered() must keep message order}, or to
+ * {@code serverThread} when it {@linkplain TelegramCommand#needsServerThread() asks for it}, so the thread delivering
+ * updates never waits on a command.
+ * <p>
+ * Matching does not allocate: the prefix is resolved once per config snapshot and command names are compared in
+ * place, case-insensitively. Only a matched command pays for its argument string.
+ */
 public final class InboundCommandRouter {
-    private final Map<String, TelegramCommand> map = new HashMap<>();
+    private static final Logger LOGGER = LogUtils.getLogger();
 
-    public InboundCommandRouter register(String name, TelegramCommand handler) {
-        map.put(name.toLowerCase(), handler);
+    private final ConfigProvider cfg;
+    private final Supplier<String> botUsername;
+    private final Executor workers;
+    private final Executor ordered;
+    private final Executor serverThread;
+    private final LongAdder rejected = new LongAdder();
+    private volatile Entry[] table = new Entry[0];
+    private volatile Prefix prefix;
+
+    /** @param botUsername this bot's username, or null while unknown */
+    public InboundCommandRouter(ConfigProvider cfg, Supplier<String> botUsername, Executor workers, Executor ordered,
+                                Executor serverThread) {
+        this.cfg = cfg;
+        this.botUsername = botUsername;
+        this.workers = workers;
+        this.ordered = ordered;
+        this.serverThread = serverThread;
+    }
+
+    public synchronized InboundCommandRouter register(String name, TelegramCommand handler) {
+        Entry[] next = Arrays.copyOf(table, table.length + 1);
+        next[table.length] = new Entry(name, handler);
+        table = next;
         return this;
     }
 
+    /** Commands refused because their executor was saturated or shut down. */
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
     public void route(TelegramInboundMessage in) {
-        var cfg = TelebridgeConfigHolder.get();
-        String prefix = (cfg.inboundCmdPrefix == null || cfg.inboundCmdPrefix.isBlank()) ? "/" : cfg.inboundCmdPrefix;
         String text = in.text;
-        if (text == null || text.isBlank() || !text.startsWith(prefix)) return;
+        if (text == null) return;
+        Prefix p = prefix();
+        if (!text.startsWith(p.value)) return;
 
-        String body = text.substring(prefix.length()).trim();
-        int sp = body.indexOf(' ');
-        String cmd = (sp == -1 ? body : body.substring(0, sp)).toLowerCase();
-        String args = (sp == -1 ? "" : body.substring(sp + 1)).trim();
+        int start = p.value.length();
+        int end = start;
+        while (end < text.length() && !isNameEnd(text.charAt(end))) end++;
+        Entry e = lookup(text, start, end - start);
+        if (e == null) return;
 
-        TelegramCommand h = map.get(cmd);
-        if (h != null) h.handle(args, in);
+        // "/cmd@BotName" is how Telegram clients address one bot in a group; in a cluster "/cmd@survival" addresses
+        // one server
+        if (end < text.length() && text.charAt(end) == '@') {
+            int at = end + 1;
+            while (end < text.length() && !Character.isWhitespace(text.charAt(end))) end++;
+            if (!addressedHere(p.instance, text, at, end)) return;
+        }
+        String args = text.substring(end).trim();
+        try {
+            executorFor(e.handler).execute(() -> run(e, args, in));
+        } catch (RejectedExecutionException ex) {
+            rejected.increment();
+        }
+    }
+
+    private Executor executorFor(TelegramCommand handler) {
+        if (handler.needsServerThread()) return serverThread;
+        return handler.ordered() ? ordered : workers;
+    }
+
+    private static void run(Entry e, String args, TelegramInboundMessage in) {
+        try {
+            e.handler.handle(args, in);
+        } catch (RuntimeException ex) {
+            LOGGER.warn("[TeleBridge] Telegram command {} failed", e.name, ex);
+        }
+    }
+
+    private Entry lookup(String text, int start, int length) {
+        if (length == 0) return null;
+        for (Entry e : table) {
+            if (e.name.length() == length && text.regionMatches(true, start, e.name, 0, length)) return e;
+        }
+        return null;
     }
-}
 
+    /** Another bot's name means the command is for that bot; so does any name while ours is still unknown. */
+    private boolean addressedHere(String instance, String text, int from, int to) {
+        int n = to - from;
+        if (instance != null && n == instance.length() && text.regionMatches(true, from, instance, 0, n)) return true;
+        String bot = botUsername.get();
+        return bot != null && n == bot.length() && text.regionMatches(true, from, bot, 0, n);
+    }
+
+    private static boolean isNameEnd(char c) {
+        return c == '@' || Character.isWhitespace(c);
+    }
+
+    private Prefix prefix() {
+        TelebridgeConfig c = cfg.get();
+        Prefix p = prefix;
+        if (p == null || p.config != c) {
+            String value = (c.inboundCmdPrefix == null || c.inboundCmdPrefix.isBlank()) ? "/" : c.inboundCmdPrefix;
+            p = new Prefix(c, value, c.hasCluster() ? c.inboundClusterInstance : null);
+            prefix = p;
+        }
+        return p;
+    }
+
+    private static final class Entry {
+        final String name;
+        final TelegramCommand handler;
+
+        Entry(String name, TelegramCommand handler) {
+            this.name = name;
+            this.handler = handler;
+        }
+    }
+
+    private static final class Prefix {
+        final TelebridgeConfig config;
+        final String value;
+        /** This server's namespace in a cluster, null when running alone. */
+        final String instance;
+
+        Prefix(TelebridgeConfig config, String value, String instance) {
+            this.config = config;
+            this.value = value;
+            this.instance = instance;
+        }
+    }
+}
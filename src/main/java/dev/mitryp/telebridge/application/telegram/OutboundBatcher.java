@@ -0,0 +1,87 @@
+package dev.mitryp.telebridge.application.telegram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+
+/**
+ * Coalesces already-formatted lines into newline-separated messages.
+ * A batch is flushed when its window elapses or when the next line would push it past {@link #MAX_MESSAGE_CHARS}.
+ */
+public final class OutboundBatcher {
+    public static final int MAX_MESSAGE_CHARS = 4096;
+
+    private final ScheduledExecutorService scheduler;
+    private final IntSupplier windowMs;
+    private final Consumer<String> sink;
+    private final StringBuilder pending = new StringBuilder();
+    private ScheduledFuture<?> scheduled;
+
+    public OutboundBatcher(ScheduledExecutorService scheduler, IntSupplier windowMs, Consumer<String> sink) {
+        this.scheduler = scheduler;
+        this.windowMs = windowMs;
+        this.sink = sink;
+    }
+
+    public synchronized void add(String line) {
+        if (line == null || line.isEmpty()) return;
+        if (line.length() > MAX_MESSAGE_CHARS) {
+            for (String part : splitOnLines(line, MAX_MESSAGE_CHARS)) add(part);
+            return;
+        }
+        if (pending.length() > 0 && pending.length() + 1 + line.length() > MAX_MESSAGE_CHARS) flushLocked();
+
+        if (pending.length() > 0) pending.append('\n');
+        pending.append(line);
+
+        int window = windowMs.getAsInt();
+        if (window <= 0 || pending.length() >= MAX_MESSAGE_CHARS) {
+            flushLocked();
+        } else if (scheduled == null) {
+            scheduled = scheduler.schedule(this::flush, window, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public synchronized void flush() {
+        flushLocked();
+    }
+
+    /**
+     * Cuts {@code text} into pieces of at most {@code max} chars, breaking after the last newline that fits.
+     * A single line longer than {@code max} is cut mid-line, never inside a surrogate pair.
+     */
+    public static List<String> splitOnLines(String text, int max) {
+        if (text.length() <= max) return List.of(text);
+        List<String> parts = new ArrayList<>();
+        int start = 0;
+        while (text.length() - start > max) {
+            int nl = text.lastIndexOf('\n', start + max);
+            int end;
+            if (nl > start) {
+                end = nl;
+            } else {
+                end = start + max;
+                if (Character.isHighSurrogate(text.charAt(end - 1))) end--;
+            }
+            parts.add(text.substring(start, end));
+            start = end < text.length() && text.charAt(end) == '\n' ? end + 1 : end;
+        }
+        if (start < text.length()) parts.add(text.substring(start));
+        return parts;
+    }
+
+    private void flushLocked() {
+        if (scheduled != null) {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+        if (pending.length() == 0) return;
+        String text = pending.toString();
+        pending.setLength(0);
+        sink.accept(text);
+    }
+}
@@ -0,0 +1,481 @@
+package dev.mitryp.telebridge.application.telegram;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.mojang.logging.LogUtils;
+import dev.mitryp.telebridge.domain.models.Destination;
+import dev.mitryp.telebridge.domain.models.OutboundMessage;
+import dev.mitryp.telebridge.domain.models.OutboundPriority;
+import dev.mitryp.telebridge.utils.TokenBucket;
+import org.slf4j.Logger;
+
+import java.net.http.HttpResponse;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Paces outbound messages to Telegram's documented limits.
+ * <p>
+ * Every destination (a chat, or one forum topic of it) gets its own lane with one request in flight at a time, so
+ * messages to a destination keep their order while lanes proceed independently. Telegram limits whole chats, so the
+ * lanes of one chat share a {@link ChatLimit}: a lane may only send when both that chat bucket and the shared bot
+ * bucket have a token, and a 429 pauses every lane of the chat for exactly {@code parameters.retry_after} seconds
+ * before the same message is retried. Network errors and 5xx back off only the lane that saw them, and after
+ * {@link #MAX_ATTEMPTS} in a row the request is dropped like a rejected one, so it cannot block its lane for good.
+ * <p>
+ * Inside a lane every {@link OutboundPriority} has its own bounded queue and the most important non-empty one always
+ * sends next, so a chat flood cannot delay or push out lifecycle, death or join/quit lines. A full queue sheds its
+ * oldest message; chat and join/quit shed into a "n lines skipped" notice sent with the next message of the class.
+ * Messages are reported to {@code onSettled} exactly once: when Telegram accepts them, rejects them for good, they run
+ * out of attempts, or they are shed; never while they may still be delivered. The spool's acknowledged mark cannot move past a message that
+ * is never settled. All bookkeeping runs on the single-threaded {@code exec}.
+ * <p>
+ * On shutdown {@link #drain} stops separating classes: each lane sends everything it holds as few messages as
+ * possible, lines in spool order, until the lanes are empty or the deadline passes.
+ */
+public final class OutboundScheduler {
+    @FunctionalInterface
+    public interface Sender {
+        CompletableFuture<HttpResponse<String>> send(OutboundMessage m);
+    }
+
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    // https://core.telegram.org/bots/faq#my-bot-is-hitting-limits-how-do-i-avoid-this
+    private static final double BOT_PER_SECOND = 30;
+    private static final double PRIVATE_CHAT_PER_SECOND = 1;
+    private static final double GROUP_PER_SECOND = 20 / 60d;
+    private static final long MAX_BACKOFF_SECONDS = 60;
+    // About a quarter of an hour of retries once the backoff reaches its cap
+    private static final int MAX_ATTEMPTS = 20;
+    private static final OutboundPriority[] PRIORITIES = OutboundPriority.values();
+    /** Queue bound per destination and class, indexed by {@link OutboundPriority#ordinal()}. */
+    private static final int[] CAPACITY = {16, 256, 16, 128, 128, 64};
+    private static final Set<OutboundPriority> SUMMARISED = EnumSet.of(OutboundPriority.JOIN_QUIT, OutboundPriority.CHAT);
+
+    private final ScheduledExecutorService exec;
+    private final Sender sender;
+    private final BiConsumer<OutboundMessage, HttpResponse<String>> onSettled;
+    private final TokenBucket botBucket = new TokenBucket(BOT_PER_SECOND, BOT_PER_SECOND);
+    private final Map<Destination, Lane> lanes = new HashMap<>();
+    /** {@link #lanes} in creation order; pumping starts one lane further each time so no lane always goes first. */
+    private final List<Lane> order = new ArrayList<>();
+    private final Map<String, ChatLimit> chats = new HashMap<>();
+    private int cursor;
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong[] shedLines = new AtomicLong[PRIORITIES.length];
+    private ScheduledFuture<?> wakeup;
+    private long wakeupAt;
+    private boolean draining;
+
+    /**
+     * @param onSettled also gets Telegram's response, or null for a message shed before it was sent or given up on
+     *                  after network errors
+     */
+    public OutboundScheduler(ScheduledExecutorService exec, Sender sender,
+                             BiConsumer<OutboundMessage, HttpResponse<String>> onSettled) {
+        this.exec = exec;
+        this.sender = sender;
+        this.onSettled = onSettled;
+        for (int i = 0; i < shedLines.length; i++) shedLines[i] = new AtomicLong();
+    }
+
+    public void submit(OutboundMessage m) {
+        synchronized (this) {
+            Lane lane = lanes.computeIfAbsent(new Destination(m.chatId, m.threadId), this::newLane);
+            int cls = m.priority.ordinal();
+            ArrayDeque<OutboundMessage> queue = lane.queues[cls];
+            if (queue.size() >= CAPACITY[cls]) shed(lane, queue.pollFirst());
+            queue.addLast(m);
+        }
+        runOnExec(this::pump);
+    }
+
+    public long sentCount() {
+        return sent.get();
+    }
+
+    /** Messages accepted by Telegram, counting each line a batched request carried. */
+    public long deliveredCount() {
+        return delivered.get();
+    }
+
+    public long retriedCount() {
+        return retried.get();
+    }
+
+    public long droppedCount() {
+        return dropped.get();
+    }
+
+    public long rejectedCount() {
+        return rejected.get();
+    }
+
+    /** Lines of class {@code p} shed from full queues. */
+    public long shedCount(OutboundPriority p) {
+        return shedLines[p.ordinal()].get();
+    }
+
+    public synchronized int laneCount() {
+        return order.size();
+    }
+
+    public synchronized long queuedCount() {
+        long n = 0;
+        for (Lane lane : order) {
+            n += lane.parts.size();
+            for (ArrayDeque<OutboundMessage> q : lane.queues) n += q.size();
+        }
+        return n;
+    }
+
+    /**
+     * Sends what is queued as batches until every lane is idle or {@code deadlineNanos} passes; rate limits still
+     * apply. Blocks the caller, not {@code exec}.
+     */
+    public DrainResult drain(long deadlineNanos) {
+        long before = delivered.get();
+        synchronized (this) {
+            draining = true;
+        }
+        runOnExec(this::pump);
+        synchronized (this) {
+            try {
+                for (long left; !idle() && (left = deadlineNanos - System.nanoTime()) > 0; ) {
+                    TimeUnit.NANOSECONDS.timedWait(this, left);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            long abandoned = 0;
+            long spooled = 0;
+            for (Lane lane : order) {
+                for (OutboundMessage m : lane.parts) spooled += m.seq > 0 ? 1 : 0;
+                for (ArrayDeque<OutboundMessage> q : lane.queues) {
+                    for (OutboundMessage m : q) spooled += m.seq > 0 ? 1 : 0;
+                }
+                abandoned += lane.parts.size();
+                for (ArrayDeque<OutboundMessage> q : lane.queues) abandoned += q.size();
+            }
+            return new DrainResult(delivered.get() - before, abandoned, spooled);
+        }
+    }
+
+    private boolean idle() {
+        for (Lane lane : order) {
+            if (lane.inFlight || !lane.isEmpty()) return false;
+        }
+        return true;
+    }
+
+    private synchronized void pump() {
+        long now = System.nanoTime();
+        long nextWake = Long.MAX_VALUE;
+
+        int n = order.size();
+        if (n == 0) return;
+        int start = Math.floorMod(cursor++, n);
+        for (int i = 0; i < n; i++) {
+            Lane lane = order.get((start + i) % n);
+            if (lane.inFlight || lane.isEmpty()) continue;
+            long pausedUntil = lane.pausedUntil - lane.chat.pausedUntil > 0 ? lane.pausedUntil : lane.chat.pausedUntil;
+            if (pausedUntil - now > 0) {
+                nextWake = Math.min(nextWake, pausedUntil);
+                continue;
+            }
+            // Peek both buckets first so a lane that cannot send does not burn the shared token
+            long wait = Math.max(lane.chat.bucket.nanosUntilToken(now), botBucket.nanosUntilToken(now));
+            if (wait > 0) {
+                nextWake = Math.min(nextWake, now + wait);
+                continue;
+            }
+            lane.chat.bucket.tryTake(now);
+            botBucket.tryTake(now);
+            dispatch(lane);
+        }
+
+        if (nextWake != Long.MAX_VALUE) scheduleWakeup(now, nextWake);
+    }
+
+    private void dispatch(Lane lane) {
+        OutboundMessage m = takeBatch(lane);
+        lane.inFlight = true;
+        CompletableFuture<HttpResponse<String>> f;
+        try {
+            f = sender.send(m);
+        } catch (RuntimeException ex) {
+            f = CompletableFuture.failedFuture(ex);
+        }
+        f.whenComplete((res, ex) -> runOnExec(() -> onResult(lane, res, ex)));
+    }
+
+    /**
+     * Takes the head of the most important non-empty class; lines of that class that piled up behind the rate limit
+     * go out together with it instead of one by one.
+     */
+    private OutboundMessage takeBatch(Lane lane) {
+        ArrayDeque<OutboundMessage> queue = lane.highest();
+        if (draining && isPlain(queue.peekFirst())) return takeEverything(lane);
+        OutboundMessage head = queue.pollFirst();
+        lane.parts.add(head);
+        StringBuilder text = null;
+
+        int skipped = lane.skipped[head.priority.ordinal()];
+        if (skipped > 0) {
+            String notice = "> … " + skipped + (head.priority == OutboundPriority.CHAT ? " chat" : " join/quit") + " lines skipped";
+            if (notice.length() + 1 + head.text.length() <= OutboundBatcher.MAX_MESSAGE_CHARS) {
+                text = new StringBuilder(notice).append('\n').append(head.text);
+                lane.summarised = skipped;
+            }
+        }
+        while (!queue.isEmpty()) {
+            OutboundMessage next = queue.peekFirst();
+            int length = (text == null ? head.text.length() : text.length()) + 1 + next.text.length();
+            if (!head.canMergeWith(next) || length > OutboundBatcher.MAX_MESSAGE_CHARS) break;
+            if (text == null) text = new StringBuilder(head.text);
+            text.append('\n').append(next.text);
+            lane.parts.add(queue.pollFirst());
+        }
+        return text == null ? head : new OutboundMessage(head.chatId, text.toString(), null, head.threadId, head.priority);
+    }
+
+    /**
+     * Drain-time batching: the plain lines at the front of every class, merged in spool order (unspooled ones last)
+     * up to the size limit. Within a class spool order is queue order, so what is taken is a prefix of each queue.
+     */
+    private static OutboundMessage takeEverything(Lane lane) {
+        List<OutboundMessage> plain = new ArrayList<>();
+        for (ArrayDeque<OutboundMessage> q : lane.queues) {
+            for (OutboundMessage m : q) {
+                if (!isPlain(m)) break;
+                plain.add(m);
+            }
+        }
+        plain.sort((a, b) -> Long.compareUnsigned(a.seq - 1, b.seq - 1));
+
+        StringBuilder text = new StringBuilder();
+        for (OutboundMessage m : plain) {
+            if (text.length() > 0 && text.length() + 1 + m.text.length() > OutboundBatcher.MAX_MESSAGE_CHARS) break;
+            if (text.length() > 0) text.append('\n');
+            text.append(m.text);
+            lane.queues[m.priority.ordinal()].pollFirst();
+            lane.parts.add(m);
+        }
+        OutboundMessage head = lane.parts.get(0);
+        return lane.parts.size() == 1 ? head : new OutboundMessage(head.chatId, text.toString(), null, head.threadId, head.priority);
+    }
+
+    /** Service lines with nothing tying them to a message of their own: no reply target, not a digest or an edit. */
+    private static boolean isPlain(OutboundMessage m) {
+        return m.replyMessageId == null && m.editMessageId == null && m.priority != OutboundPriority.DIGEST;
+    }
+
+    private synchronized void onResult(Lane lane, HttpResponse<String> res, Throwable ex) {
+        lane.inFlight = false;
+        long now = System.nanoTime();
+        int code = ex == null ? res.statusCode() : -1;
+
+        if (code / 100 == 2) {
+            complete(lane, res);
+            sent.incrementAndGet();
+        } else if (code == 429) {
+            long retryAfter = retryAfterSeconds(res);
+            LOGGER.warn("[TeleBridge] Rate limited by Telegram, pausing chat {} for {}s", lane.destination.chatId, retryAfter);
+            lane.chat.pausedUntil = now + TimeUnit.SECONDS.toNanos(retryAfter);
+            requeue(lane);
+            retried.incrementAndGet();
+        } else if ((code == -1 || code / 100 == 5) && lane.attempts + 1 < MAX_ATTEMPTS) {
+            // Transient: the message stays spooled, so keep trying rather than leave a hole in the chat
+            lane.attempts++;
+            long delay = Math.min(MAX_BACKOFF_SECONDS, 1L << Math.min(lane.attempts, 6));
+            if (lane.attempts == 1) {
+                LOGGER.warn("[TeleBridge] Sending to {} failed ({}), retrying in {}s", lane.destination,
+                        ex != null ? ex.toString() : "HTTP " + code, delay);
+            }
+            lane.pausedUntil = now + TimeUnit.SECONDS.toNanos(delay);
+            requeue(lane);
+            retried.incrementAndGet();
+        } else if (code == -1 || code / 100 == 5) {
+            LOGGER.warn("[TeleBridge] Giving up on a message to {} after {} attempts ({})", lane.destination,
+                    MAX_ATTEMPTS, ex != null ? ex.toString() : "HTTP " + code);
+            complete(lane, res);
+            dropped.incrementAndGet();
+        } else {
+            // Other 4xx: the request itself is wrong and would fail again
+            LOGGER.warn("[TeleBridge] Telegram rejected a message to {}: {} {}", lane.destination, code, res.body());
+            complete(lane, res);
+            dropped.incrementAndGet();
+        }
+        pump();
+        if (draining) notifyAll();
+    }
+
+    /** Puts the parts of a failed request back in front, so a more important message that arrived meanwhile goes first. */
+    private static void requeue(Lane lane) {
+        for (int i = lane.parts.size() - 1; i >= 0; i--) {
+            OutboundMessage part = lane.parts.get(i);
+            lane.queues[part.priority.ordinal()].addFirst(part);
+        }
+        lane.parts.clear();
+        lane.summarised = 0;
+    }
+
+    private void complete(Lane lane, HttpResponse<String> res) {
+        int cls = lane.parts.get(0).priority.ordinal();
+        lane.skipped[cls] -= lane.summarised;
+        lane.summarised = 0;
+        lane.shedding[cls] = false;
+        lane.attempts = 0;
+        if (res != null && res.statusCode() / 100 == 2) delivered.addAndGet(lane.parts.size());
+        for (OutboundMessage part : lane.parts) onSettled.accept(part, res);
+        lane.parts.clear();
+    }
+
+    /**
+     * Shed messages are settled like delivered ones: replaying a stale flood after a restart would only repeat the
+     * pressure that shed it.
+     */
+    private void shed(Lane lane, OutboundMessage m) {
+        int cls = m.priority.ordinal();
+        int lines = 1;
+        for (int i = 0; i < m.text.length(); i++) {
+            if (m.text.charAt(i) == '\n') lines++;
+        }
+        shedLines[cls].addAndGet(lines);
+        if (SUMMARISED.contains(m.priority)) lane.skipped[cls] += lines;
+        if (!lane.shedding[cls]) {
+            lane.shedding[cls] = true;
+            LOGGER.warn("[TeleBridge] Outbound {} queue for {} is full, shedding the oldest lines", m.priority.key, lane.destination);
+        }
+        onSettled.accept(m, null);
+    }
+
+    private Lane newLane(Destination d) {
+        Lane lane = new Lane(d, chats.computeIfAbsent(d.chatId, ChatLimit::new));
+        order.add(lane);
+        return lane;
+    }
+
+    private void scheduleWakeup(long now, long at) {
+        if (wakeup != null && !wakeup.isDone()) {
+            if (wakeupAt - at <= 0) return;
+            wakeup.cancel(false);
+        }
+        wakeupAt = at;
+        try {
+            wakeup = exec.schedule(this::pump, Math.max(0, at - now), TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+        }
+    }
+
+    private void runOnExec(Runnable r) {
+        try {
+            exec.execute(r);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+        }
+    }
+
+    static long retryAfterSeconds(HttpResponse<String> res) {
+        long fromBody = retryAfterSeconds(res.body());
+        return fromBody > 0 ? fromBody : res.headers().firstValueAsLong("Retry-After").orElse(1);
+    }
+
+    /** {@code parameters.retry_after} of a Bot API error body, at least 1; 0 if the body has none. */
+    static long retryAfterSeconds(String body) {
+        try {
+            JsonObject obj = JsonParser.parseString(body).getAsJsonObject();
+            if (obj.has("parameters")) {
+                JsonObject params = obj.getAsJsonObject("parameters");
+                if (params.has("retry_after")) return Math.max(1, params.get("retry_after").getAsLong());
+            }
+        } catch (RuntimeException ignored) {
+        }
+        return 0;
+    }
+
+    public static final class DrainResult {
+        public final long delivered;
+        /** Messages still queued or in flight at the deadline. */
+        public final long abandoned;
+        /** Of {@link #abandoned}, those in the spool, which the next start sends. */
+        public final long spooled;
+
+        DrainResult(long delivered, long abandoned, long spooled) {
+            this.delivered = delivered;
+            this.abandoned = abandoned;
+            this.spooled = spooled;
+        }
+    }
+
+    /** Limits Telegram applies to a chat as a whole, shared by the lanes of its topics. */
+    private static final class ChatLimit {
+        final TokenBucket bucket;
+        long pausedUntil = System.nanoTime();
+
+        ChatLimit(String chatId) {
+            // Group and channel ids are negative; groups get 20 messages/minute, private chats 1/second.
+            // A burst of 2 plus the refill rate never exceeds 20 inside any 60 s window.
+            this.bucket = chatId.startsWith("-")
+                    ? new TokenBucket(2, GROUP_PER_SECOND * 0.9)
+                    : new TokenBucket(1, PRIVATE_CHAT_PER_SECOND);
+        }
+    }
+
+    private static final class Lane {
+        final Destination destination;
+        final ChatLimit chat;
+        /** One queue per {@link OutboundPriority}, indexed by ordinal. */
+        final ArrayDeque<OutboundMessage>[] queues;
+        /** Shed lines of each summarised class not yet reported in a notice. */
+        final int[] skipped = new int[PRIORITIES.length];
+        final boolean[] shedding = new boolean[PRIORITIES.length];
+        /** Original messages folded into the request in flight, settled together with it. */
+        final List<OutboundMessage> parts = new ArrayList<>();
+        /** Skipped lines reported by the notice in flight. */
+        int summarised;
+        boolean inFlight;
+        long pausedUntil = System.nanoTime();
+        int attempts;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Lane(Destination destination, ChatLimit chat) {
+            this.destination = destination;
+            this.chat = chat;
+            this.queues = new ArrayDeque[PRIORITIES.length];
+            for (int i = 0; i < queues.length; i++) queues[i] = new ArrayDeque<>();
+        }
+
+        boolean isEmpty() {
+            for (ArrayDeque<OutboundMessage> q : queues) {
+                if (!q.isEmpty()) return false;
+            }
+            return true;
+        }
+
+        ArrayDeque<OutboundMessage> highest() {
+            for (ArrayDeque<OutboundMessage> q : queues) {
+                if (!q.isEmpty()) return q;
+            }
+            throw new IllegalStateException("empty lane");
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package dev.mitryp.telebridge.application.telegram;
+
+import dev.mitryp.telebridge.domain.models.OutboundMessage;
+import dev.mitryp.telebridge.domain.models.TelebridgeConfig;
+import dev.mitryp.telebridge.utils.Markdown;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds sendMessage (and editMessageText) form bodies in a single pass: MarkdownV2 escaping and form-URL encoding
+ * go straight into a reused UTF-8 byte buffer, with no intermediate strings. A "> " at the start of any line is kept
+ * unescaped so Telegram renders it as a quote. The chat_id/parse_mode prefix is encoded once per config snapshot and
+ * chat.
+ * <p>
+ * Output is byte-for-byte what {@code URLEncoder} would produce for the escaped text. Not thread-safe.
+ */
+public final class SendMessageEncoder {
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+    /** ASCII that form encoding leaves as is. */
+    private static final boolean[] UNRESERVED = new boolean[128];
+    private static final byte[] CHAT_ID = ascii("chat_id=");
+    private static final byte[] TEXT = ascii("&text=");
+    private static final byte[] QUOTE = ascii("%3E+");
+    private static final byte[] BACKSLASH = ascii("%5C");
+    private static final byte[] REPLY = ascii("&reply_to_message_id=");
+    private static final byte[] ALLOW_NO_REPLY = ascii("&allow_sending_without_reply=true");
+    private static final byte[] THREAD = ascii("&message_thread_id=");
+    private static final byte[] MESSAGE_ID = ascii("&message_id=");
+    private static final byte[] MARKDOWN = ascii("&parse_mode=MarkdownV2&disable_web_page_preview=true");
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) UNRESERVED[c] = true;
+        for (char c = 'A'; c <= 'Z'; c++) UNRESERVED[c] = true;
+        for (char c = '0'; c <= '9'; c++) UNRESERVED[c] = true;
+        UNRESERVED['.'] = UNRESERVED['-'] = UNRESERVED['*'] = UNRESERVED['_'] = true;
+    }
+
+    private final Map<String, byte[]> prefixes = new HashMap<>();
+    private TelebridgeConfig snapshot;
+    private byte[] buf = new byte[1024];
+    private int len;
+
+    /** @return a fresh array holding exactly the body; the HTTP client reads it after this method returns */
+    public byte[] encode(TelebridgeConfig c, OutboundMessage m) {
+        if (c != snapshot) {
+            snapshot = c;
+            prefixes.clear();
+        }
+        byte[] prefix = prefixes.get(m.chatId);
+        if (prefix == null) {
+            prefix = prefix(m.chatId, c.telegramUseMarkdownV2);
+            prefixes.put(m.chatId, prefix);
+        }
+
+        len = 0;
+        // Worst case is a backslash plus a percent-encoded byte (6) or three percent-encoded bytes (9) per char
+        ensure(prefix.length + TEXT.length + m.text.length() * 9 + 96);
+        put(prefix);
+        put(TEXT);
+        putText(m.text, c.telegramUseMarkdownV2);
+        if (m.editMessageId != null) {
+            // editMessageText takes the message id and rejects reply or thread parameters
+            put(MESSAGE_ID);
+            putInt(m.editMessageId);
+            return Arrays.copyOf(buf, len);
+        }
+        if (m.replyMessageId != null) {
+            put(REPLY);
+            putInt(m.replyMessageId);
+            put(ALLOW_NO_REPLY);
+        }
+        if (m.threadId != null) {
+            put(THREAD);
+            putInt(m.threadId);
+        }
+        return Arrays.copyOf(buf, len);
+    }
+
+    private byte[] prefix(String chatId, boolean mdV2) {
+        len = 0;
+        ensure(8 + chatId.length() * 9 + MARKDOWN.length);
+        put(CHAT_ID);
+        putText(chatId, false);
+        if (mdV2) put(MARKDOWN);
+        return Arrays.copyOf(buf, len);
+    }
+
+    private void putText(String s, boolean mdV2) {
+        boolean lineStart = true;
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char ch = s.charAt(i);
+            if (mdV2 && lineStart && ch == '>' && i + 1 < n && s.charAt(i + 1) == ' ') {
+                put(QUOTE);
+                i++;
+                lineStart = false;
+                continue;
+            }
+            lineStart = ch == '\n';
+
+            if (ch < 0x80) {
+                if (mdV2 && Markdown.needsEscape(ch)) put(BACKSLASH);
+                if (UNRESERVED[ch]) buf[len++] = (byte) ch;
+                else if (ch == ' ') buf[len++] = '+';
+                else pct(ch);
+            } else if (ch < 0x800) {
+                pct(0xC0 | (ch >> 6));
+                pct(0x80 | (ch & 0x3F));
+            } else if (Character.isHighSurrogate(ch) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(ch, s.charAt(++i));
+                pct(0xF0 | (cp >> 18));
+                pct(0x80 | ((cp >> 12) & 0x3F));
+                pct(0x80 | ((cp >> 6) & 0x3F));
+                pct(0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(ch)) {
+                pct('?'); // same replacement String.getBytes uses for a lone surrogate
+            } else {
+                pct(0xE0 | (ch >> 12));
+                pct(0x80 | ((ch >> 6) & 0x3F));
+                pct(0x80 | (ch & 0x3F));
+            }
+        }
+    }
+
+    private void putInt(int v) {
+        ensure(len + 11);
+        if (v < 0) {
+            buf[len++] = '-';
+        } else {
+            v = -v;
+        }
+        // Work on the negative value so Integer.MIN_VALUE needs no special case
+        int start = len;
+        do {
+            buf[len++] = (byte) ('0' - v % 10);
+            v /= 10;
+        } while (v != 0);
+        for (int a = start, b = len - 1; a < b; a++, b--) {
+            byte t = buf[a];
+            buf[a] = buf[b];
+            buf[b] = t;
+        }
+    }
+
+    private void pct(int b) {
+        buf[len++] = '%';
+        buf[len++] = HEX[(b >> 4) & 0xF];
+        buf[len++] = HEX[b & 0xF];
+    }
+
+    private void put(byte[] bytes) {
+        System.arraycopy(bytes, 0, buf, len, bytes.length);
+        len += bytes.length;
+    }
+
+    private void ensure(int capacity) {
+        if (capacity > buf.length) buf = Arrays.copyOf(buf, Math.max(capacity, buf.length * 2));
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,16 @@
+package dev.mitryp.telebridge.application.telegram;
+
+import java.io.IOException;
+
+/** Telegram answered a Bot API call with an error status, e.g. 409 while a webhook or another poller is active. */
+public final class TelegramApiException extends IOException {
+    public final int status;
+    /** {@code parameters.retry_after} of a 429, 0 when Telegram did not ask for a wait. */
+    public final long retryAfterSeconds;
+
+    public TelegramApiException(String method, int status, String description, long retryAfterSeconds) {
+        super(method + " returned HTTP " + status + (description == null ? "" : ": " + description));
+        this.status = status;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -1,139 +1,379 @@
 package dev.mitryp.telebridge.application.telegram;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.mojang.logging.LogUtils;
 import dev.mitryp.telebridge.domain.interfaces.ConfigProvider;
+import dev.mitryp.telebridge.domain.interfaces.OutboundSpool;
 import dev.mitryp.telebridge.domain.interfaces.TelegramGateway;
+import dev.mitryp.telebridge.domain.interfaces.UpdateOffsetStore;
+import dev.mitryp.telebridge.domain.models.Destination;
+import dev.mitryp.telebridge.domain.models.OutboundMessage;
+import dev.mitryp.telebridge.domain.models.OutboundPriority;
+import dev.mitryp.telebridge.domain.models.PlayerActivity;
+import dev.mitryp.telebridge.domain.models.ServiceEvent;
 import dev.mitryp.telebridge.domain.models.TelebridgeConfig;
 import dev.mitryp.telebridge.domain.models.TelegramInboundMessage;
-import dev.mitryp.telebridge.utils.Markdown;
+import dev.mitryp.telebridge.utils.metrics.BridgeMetrics;
+import org.slf4j.Logger;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
+import java.net.URI;
 import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
-import java.util.concurrent.Executor;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 
 public final class TelegramHttpGateway implements TelegramGateway {
+    private static final Logger LOGGER = LogUtils.getLogger();
     private final ConfigProvider cfg;
-    private final Executor executor;
-    private volatile long offset = 0;
-    private static final Gson GSON = new Gson();
+    private final ScheduledExecutorService exec;
+    /** One per destination and priority, so lines bound for different places or classes are never merged. */
+    private final Map<Destination, OutboundBatcher[]> batchers = new ConcurrentHashMap<>();
+    private final OutboundScheduler scheduler;
+    private final ActivityDigest digest;
+    private final OutboundSpool spool;
+    private final SendMessageEncoder encoder = new SendMessageEncoder();
+    private final BridgeMetrics metrics;
+    private final HttpClient http;
+    private volatile Endpoints endpoints;
+    private final UpdateOffsetStore offsets;
+    private volatile long offset;
+    private final AtomicBoolean meInFlight = new AtomicBoolean();
+    private static final Duration SEND_TIMEOUT = Duration.ofSeconds(8);
 
-    public TelegramHttpGateway(ConfigProvider cfg, Executor executor) {
+    public TelegramHttpGateway(ConfigProvider cfg, ScheduledExecutorService exec, OutboundSpool spool,
+                               UpdateOffsetStore offsets, BridgeMetrics metrics) {
         this.cfg = cfg;
-        this.executor = executor;
+        this.spool = spool;
+        this.offsets = offsets;
+        this.metrics = metrics;
+        // -1 asks Telegram for just the latest update, confirming the backlog a first-ever start must not replay
+        long last = offsets.lastUpdateId();
+        this.offset = last >= 0 ? last + 1 : -1;
+        resetIfStale();
+        this.exec = exec;
+        this.scheduler = new OutboundScheduler(exec, this::sendTelegram, this::settled);
+        // Digest messages skip the spool: they are rebuilt from live events, not replayed
+        this.digest = new ActivityDigest(exec, () -> cfg.get().outboundDigestWindowSeconds, scheduler::submit);
+        // One client for the whole mod: connections are pooled and kept alive (HTTP/2 when the server offers it)
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        var r = metrics.registry;
+        r.gauge("telebridge_outbound_queued", "Messages waiting in outbound lanes", scheduler::queuedCount);
+        r.gauge("telebridge_outbound_lanes", "Destinations with an outbound lane", scheduler::laneCount);
+        r.counter("telebridge_outbound_sent_total", "Messages accepted by Telegram", scheduler::sentCount);
+        r.counter("telebridge_outbound_retried_total", "Sends retried after a 429, 5xx or network error", scheduler::retriedCount);
+        r.counter("telebridge_outbound_dropped_total", "Messages rejected by Telegram as invalid or given up on after repeated failures", scheduler::droppedCount);
+        for (OutboundPriority p : OutboundPriority.values()) {
+            r.counter("telebridge_outbound_shed_lines_total{class=\"" + p.key + "\"}",
+                    "Lines shed from a full outbound queue, by priority class", () -> scheduler.shedCount(p));
+        }
+        r.counter("telebridge_rejected_tasks_total", "Outbound work refused by a shut-down executor", scheduler::rejectedCount);
     }
 
     @Override
-    public void sendService(String plainText) {
+    public void sendService(ServiceEvent kind, String plainText) {
         var c = cfg.get();
         if (!c.hasOutbound()) return;
-        executor.execute(() -> {
-            try {
-                sendTelegram(plainText, null, null);
-            } catch (Exception ignored) {
-            }
-        });
+        int priority = OutboundPriority.of(kind).ordinal();
+        for (Destination d : c.destinationsFor(kind)) batchers.computeIfAbsent(d, this::newBatchers)[priority].add(plainText);
+    }
+
+    @Override
+    public void sendActivity(PlayerActivity kind, String player, String line) {
+        var c = cfg.get();
+        if (!c.outboundDigestEnabled) {
+            sendService(kind.serviceEvent(), line);
+            return;
+        }
+        if (!c.hasOutbound()) return;
+        for (Destination d : c.destinationsFor(kind.serviceEvent())) digest.record(d, kind, player, line);
     }
 
     @Override
     public void sendReply(String plainText, Integer replyMessageId, Integer threadId) {
         var c = cfg.get();
         if (!c.hasOutbound()) return;
-        executor.execute(() -> {
-            try {
-                sendTelegram(plainText, replyMessageId, threadId);
-            } catch (Exception ignored) {
-            }
-        });
+        // Chunks share a lane and class, so they arrive in order
+        for (String part : OutboundBatcher.splitOnLines(plainText, OutboundBatcher.MAX_MESSAGE_CHARS)) {
+            enqueue(new OutboundMessage(c.telegramChatId, part, replyMessageId, threadId, OutboundPriority.REPLY));
+        }
+    }
+
+    @Override
+    public void flush() {
+        for (OutboundBatcher[] byPriority : batchers.values()) {
+            for (OutboundBatcher b : byPriority) b.flush();
+        }
+        digest.flush();
     }
 
     @Override
-    public void pollOnce(Consumer<TelegramInboundMessage> consumer) throws Exception {
+    public void shutdown(long timeoutMillis) {
+        long start = System.nanoTime();
+        flush();
+        OutboundScheduler.DrainResult r = scheduler.drain(start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+        long tookMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (r.abandoned == 0) {
+            LOGGER.info("[TeleBridge] Outbound drained: {} messages delivered in {} ms", r.delivered, tookMs);
+        } else {
+            LOGGER.warn("[TeleBridge] Outbound drain stopped after {} ms: {} messages delivered, {} abandoned "
+                    + "({} kept in the spool for the next start, {} lost)", tookMs, r.delivered, r.abandoned,
+                    r.spooled, r.abandoned - r.spooled);
+        }
+    }
+
+    private OutboundBatcher[] newBatchers(Destination d) {
+        OutboundPriority[] priorities = OutboundPriority.values();
+        OutboundBatcher[] byPriority = new OutboundBatcher[priorities.length];
+        for (OutboundPriority p : priorities) {
+            byPriority[p.ordinal()] = new OutboundBatcher(exec, () -> cfg.get().outboundBatchWindowMs,
+                    text -> enqueue(new OutboundMessage(d.chatId, text, null, d.threadId, p)));
+        }
+        return byPriority;
+    }
+
+    private void settled(OutboundMessage m, HttpResponse<String> res) {
+        spool.ack(m.seq);
+        if (m.priority == OutboundPriority.DIGEST) digest.onSettled(m, res);
+    }
+
+    private void enqueue(OutboundMessage m) {
+        scheduler.submit(m.withSeq(spool.append(m)));
+    }
+
+    @Override
+    public void start() {
         var c = cfg.get();
-        if (!c.inboundEnabled) return;
-        System.out.println("Starting single poll");
+        if (!c.hasOutbound() && !c.inboundEnabled) return;
+        // Open (and keep alive) the TLS connection before the first chat line needs it
+        requestMe(c);
 
-        String url = "https://api.telegram.org/bot" + c.telegramBotToken +
-                "/getUpdates?timeout=" + c.inboundPollSeconds + "&allowed_updates=message" +
-                (offset > 0 ? "&offset=" + offset : "");
+        // Whatever the previous run could not deliver goes out first
+        if (c.hasOutbound()) spool.drainRecovered().forEach(scheduler::submit);
+    }
 
-        HttpURLConnection conn = (HttpURLConnection) new java.net.URL(url).openConnection();
-        conn.setRequestMethod("GET");
-        conn.setConnectTimeout(5000);
-        conn.setReadTimeout((c.inboundPollSeconds + 5) * 1000);
+    @Override
+    public int pollOnce(int limit, int timeoutSeconds, Consumer<TelegramInboundMessage> consumer) throws Exception {
+        var c = cfg.get();
+        if (!c.inboundEnabled) return INBOUND_OFF;
+        resetIfStale();
 
-        int code = conn.getResponseCode();
-        if (code / 100 != 2) {
-            conn.disconnect();
-            return;
+        boolean baseline = offset < 0;
+        int timeout = baseline ? 0 : timeoutSeconds < 0 ? c.inboundPollSeconds : timeoutSeconds;
+        String url = endpoints(c).getUpdates + "?timeout=" + timeout +
+                "&allowed_updates=message" + (offset != 0 ? "&offset=" + offset : "") +
+                (limit > 0 ? "&limit=" + limit : "");
+
+        HttpRequest req = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(timeout + 5))
+                .header("Accept-Encoding", "gzip")
+                .GET().build();
+
+        long start = System.nanoTime();
+        HttpResponse<InputStream> res;
+        CompletableFuture<HttpResponse<InputStream>> call = http.sendAsync(req, HttpResponse.BodyHandlers.ofInputStream());
+        try {
+            res = call.get();
+        } catch (InterruptedException e) {
+            // Stopping: abort the exchange instead of leaving the long poll open until Telegram's timeout
+            call.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            metrics.pollStatus.record(-1);
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+        metrics.pollStatus.record(res.statusCode());
+        if (res.statusCode() / 100 != 2) {
+            String body;
+            try (InputStream in = decoded(res)) {
+                body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            metrics.pollLatency.recordSince(start);
+            throw apiError("getUpdates", res.statusCode(), body);
         }
 
-        try (var r = new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8)) {
-            JsonObject obj = GSON.fromJson(r, JsonObject.class);
-            if (obj == null || !obj.has("ok") || !obj.get("ok").getAsBoolean()) return;
-            JsonArray arr = obj.getAsJsonArray("result");
-            for (JsonElement el : arr) {
-                JsonObject up = el.getAsJsonObject();
-                offset = up.get("update_id").getAsLong() + 1;
-                if (!up.has("message")) continue;
-
-                JsonObject msg = up.getAsJsonObject("message");
-                if (!msg.has("text")) continue;
-
-                JsonObject chat = msg.getAsJsonObject("chat");
-                String chatIdStr = chat.get("id").getAsLong() + "";
-                if (!chatIdStr.equals(c.telegramChatId)) continue;
-
-                String text = msg.get("text").getAsString();
-                JsonObject from = msg.getAsJsonObject("from");
-                String tgUser = from.has("username") ? from.get("username").getAsString() : null;
-                String display = (from.has("first_name") ? from.get("first_name").getAsString() : "TG") +
-                        (from.has("last_name") ? (" " + from.get("last_name").getAsString()) : "");
-                Integer messageId = msg.get("message_id").getAsInt();
-                Integer threadId = (msg.has("message_thread_id") ? msg.get("message_thread_id").getAsInt() : null);
-
-                consumer.accept(new TelegramInboundMessage(text, tgUser, display.trim(), messageId, threadId));
+        int[] received = {0};
+        try (var r = new JsonReader(new InputStreamReader(decoded(res), StandardCharsets.UTF_8))) {
+            var sink = new DedupingSink(offsets, consumer);
+            UpdatesParser.parse(r, c.telegramChatIdNumeric, (id, msg) -> {
+                received[0]++;
+                offset = id + 1;
+                if (baseline) offsets.markProcessed(id);
+                else sink.accept(id, msg);
+            });
+        }
+        // Measured to the end of the body: with long polling, headers can arrive before the updates do
+        metrics.pollLatency.recordSince(start);
+        metrics.updatesPerPoll.record(received[0]);
+        if (baseline && offset < 0) offset = 0;
+        return received[0];
+    }
+
+    /** Asks getMe again while the name is unknown, so a failed first attempt does not leave it unknown for good. */
+    @Override
+    public String botUsername() {
+        var c = cfg.get();
+        Endpoints e = endpoints(c);
+        if (e.botUsername == null) requestMe(c);
+        return e.botUsername;
+    }
+
+    /** getMe, at most one at a time; records the bot's username on the endpoints it was asked through. */
+    private void requestMe(TelebridgeConfig c) {
+        if (!meInFlight.compareAndSet(false, true)) return;
+        Endpoints e = endpoints(c);
+        HttpRequest req = HttpRequest.newBuilder(e.getMe).timeout(SEND_TIMEOUT).GET().build();
+        http.sendAsync(req, HttpResponse.BodyHandlers.ofString()).whenComplete((res, ex) -> {
+            meInFlight.set(false);
+            if (res == null || res.statusCode() / 100 != 2) return;
+            try {
+                JsonObject result = JsonParser.parseString(res.body()).getAsJsonObject().getAsJsonObject("result");
+                if (result != null && result.has("username")) e.botUsername = result.get("username").getAsString();
+            } catch (RuntimeException ignored) {
             }
-        } finally {
-            conn.disconnect();
+        });
+    }
+
+    /**
+     * After a week without updates Telegram numbers the next one at random, possibly below our offset, which would then
+     * confirm and skip it. Nothing older is left unconfirmed by then, so asking without an offset misses nothing.
+     */
+    private void resetIfStale() {
+        if (offset <= 0 || !offsets.isStale()) return;
+        LOGGER.info("[TeleBridge] No Telegram updates for a week, no longer resuming from update {}", offset);
+        offsets.reset();
+        offset = 0;
+    }
+
+    @Override
+    public long updateOffset() {
+        return offset;
+    }
+
+    @Override
+    public void seekUpdates(long offset) {
+        if (offset > this.offset) this.offset = offset;
+    }
+
+    private CompletableFuture<HttpResponse<String>> sendTelegram(OutboundMessage m) {
+        var c = cfg.get();
+        byte[] payload;
+        synchronized (encoder) {
+            payload = encoder.encode(c, m);
         }
+
+        Endpoints e = endpoints(c);
+        HttpRequest req = HttpRequest.newBuilder(m.editMessageId != null ? e.editMessageText : e.sendMessage)
+                .timeout(SEND_TIMEOUT)
+                .header("Content-Type", "application/x-www-form-urlencoded; charset=UTF-8")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(payload))
+                .build();
+        long start = System.nanoTime();
+        return http.sendAsync(req, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8)).whenComplete((res, ex) -> {
+            metrics.sendLatency.recordSince(start);
+            metrics.sendStatus.record(ex == null ? res.statusCode() : -1);
+        });
     }
 
-    private void sendTelegram(String text, Integer replyMessageId, Integer threadId) throws IOException {
+    @Override
+    public void registerWebhook(String url, String secret) {
         var c = cfg.get();
-        String url = "https://api.telegram.org/bot" + c.telegramBotToken + "/sendMessage";
-        String payload = buildBody(text, c.telegramUseMarkdownV2, c.telegramChatId, replyMessageId, threadId);
-
-        HttpURLConnection conn = (HttpURLConnection) new java.net.URL(url).openConnection();
-        conn.setRequestMethod("POST");
-        conn.setDoOutput(true);
-        conn.setRequestProperty("Content-Type", "application/x-www-form-urlencoded; charset=UTF-8");
-        conn.setConnectTimeout(5000);
-        conn.setReadTimeout(8000);
-        conn.getOutputStream().write(payload.getBytes(StandardCharsets.UTF_8));
-        int code = conn.getResponseCode();
-        if (code / 100 != 2) {
-            // Swallow in production; could log or throw
+        String body = "url=" + URLEncoder.encode(url, StandardCharsets.UTF_8) +
+                "&secret_token=" + URLEncoder.encode(secret, StandardCharsets.UTF_8) +
+                "&allowed_updates=" + URLEncoder.encode("[\"message\"]", StandardCharsets.UTF_8);
+        postForm(endpoints(c).setWebhook, body, "setWebhook");
+    }
+
+    @Override
+    public void deleteWebhook() {
+        postForm(endpoints(cfg.get()).deleteWebhook, "", "deleteWebhook");
+    }
+
+    private void postForm(URI uri, String body, String method) {
+        HttpRequest req = HttpRequest.newBuilder(uri)
+                .timeout(SEND_TIMEOUT)
+                .header("Content-Type", "application/x-www-form-urlencoded; charset=UTF-8")
+                .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
+                .build();
+        http.sendAsync(req, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8)).whenComplete((res, ex) -> {
+            if (ex != null) LOGGER.warn("[TeleBridge] {} failed: {}", method, ex.toString());
+            else if (res.statusCode() / 100 != 2) LOGGER.warn("[TeleBridge] {} failed: {} {}", method, res.statusCode(), res.body());
+        });
+    }
+
+    private Endpoints endpoints(TelebridgeConfig c) {
+        Endpoints e = endpoints;
+        if (e == null || !e.token.equals(c.telegramBotToken) || !e.baseUrl.equals(c.telegramApiBaseUrl)) {
+            e = new Endpoints(c.telegramApiBaseUrl, c.telegramBotToken);
+            endpoints = e;
+        }
+        return e;
+    }
+
+    private static TelegramApiException apiError(String method, int status, String body) {
+        String description = null;
+        try {
+            JsonObject obj = JsonParser.parseString(body).getAsJsonObject();
+            if (obj.has("description")) description = obj.get("description").getAsString();
+        } catch (RuntimeException notJson) {
+            // Not the Bot API answering, e.g. a proxy error page
+            description = body.length() > 200 ? body.substring(0, 200) + "…" : body;
         }
-        conn.disconnect();
+        long retryAfter = status == 429 ? OutboundScheduler.retryAfterSeconds(body) : 0;
+        return new TelegramApiException(method, status, description, retryAfter);
     }
 
-    private static String buildBody(String text, boolean mdV2, String chatId, Integer replyId, Integer threadId) {
-        StringBuilder b = new StringBuilder();
-        b.append("chat_id=").append(URLEncoder.encode(chatId, StandardCharsets.UTF_8));
-        b.append("&text=").append(URLEncoder.encode(mdV2 ? Markdown.escapeV2ServiceAware(text) : text, StandardCharsets.UTF_8));
-        if (mdV2) b.append("&parse_mode=MarkdownV2&disable_web_page_preview=true");
-        if (replyId != null)
-            b.append("&reply_to_message_id=").append(replyId).append("&allow_sending_without_reply=true");
-        if (threadId != null) b.append("&message_thread_id=").append(threadId);
-        return b.toString();
+    private static InputStream decoded(HttpResponse<InputStream> res) throws IOException {
+        boolean gzip = res.headers().firstValue("Content-Encoding").map("gzip"::equalsIgnoreCase).orElse(false);
+        return gzip ? new GZIPInputStream(res.body()) : res.body();
     }
 
+    /** Bot API URLs, rebuilt only when the base URL or token changes. */
+    private static final class Endpoints {
+        final String baseUrl;
+        final String token;
+        final URI sendMessage;
+        final URI editMessageText;
+        final URI getMe;
+        final URI setWebhook;
+        final URI deleteWebhook;
+        final String getUpdates;
+        /** From getMe; kept here so a new token never inherits the old bot's name. Null until it answers. */
+        volatile String botUsername;
 
+        Endpoints(String baseUrl, String token) {
+            String base = stripTrailingSlash(baseUrl) + "/bot" + token;
+            this.baseUrl = baseUrl;
+            this.token = token;
+            this.sendMessage = URI.create(base + "/sendMessage");
+            this.editMessageText = URI.create(base + "/editMessageText");
+            this.getMe = URI.create(base + "/getMe");
+            this.setWebhook = URI.create(base + "/setWebhook");
+            this.deleteWebhook = URI.create(base + "/deleteWebhook");
+            this.getUpdates = base + "/getUpdates";
+        }
+
+        private static String stripTrailingSlash(String url) {
+            return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+        }
+    }
 }
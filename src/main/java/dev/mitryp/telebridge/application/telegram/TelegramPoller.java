@@ -1,43 +1,151 @@
 package dev.mitryp.telebridge.application.telegram;
 
+import com.mojang.logging.LogUtils;
 import dev.mitryp.telebridge.domain.interfaces.TelegramGateway;
+import dev.mitryp.telebridge.domain.models.TelegramInboundMessage;
+import dev.mitryp.telebridge.utils.metrics.BridgeMetrics;
+import org.slf4j.Logger;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Inbound over getUpdates, on two threads. The poller only fetches. It puts each message on a queue and sends the
+ * next getUpdates as soon as the body is parsed. A second thread routes what is queued. Routing a burst therefore
+ * never delays the next poll, and a message sent during the burst arrives about one round trip later.
+ * <p>
+ * {@code limit} follows the traffic. It doubles while batches come back full, halves when they come back mostly
+ * empty, and never exceeds the room left in the queue, so a slow router holds the poller back instead of losing
+ * messages. The first poll after a start or an error asks for timeout 0, which picks up the backlog in one round
+ * trip; later polls wait the configured time. Errors, including error statuses such as 409, are retried with
+ * exponential backoff and jitter; a 429 waits exactly its {@code retry_after}.
+ * <p>
+ * Telegram treats an update as confirmed once a later getUpdates asks for a higher offset. Each message is queued
+ * before the offset moves past it, so a clean stop loses nothing. A crash loses at most what is still in the queue.
+ */
 public final class TelegramPoller {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final long STOP_TIMEOUT_MS = 2000;
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final int MIN_LIMIT = 10;
+    // Telegram's own maximum
+    private static final int MAX_LIMIT = 100;
+    private static final long BACKOFF_BASE_MS = 500;
+    private static final long BACKOFF_MAX_MS = 30_000;
+    private static final long INBOUND_OFF_RECHECK_MS = 1000;
     private final TelegramGateway tg;
     private final InboundCommandRouter router;
+    private final BridgeMetrics metrics;
     private final AtomicBoolean running = new AtomicBoolean(false);
+    private final BlockingQueue<TelegramInboundMessage> handoff = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private volatile int limit = MIN_LIMIT;
     private Thread thread;
+    private Thread routing;
 
-    public TelegramPoller(TelegramGateway tg, InboundCommandRouter router) {
+    public TelegramPoller(TelegramGateway tg, InboundCommandRouter router, BridgeMetrics metrics) {
         this.tg = tg;
         this.router = router;
+        this.metrics = metrics;
+
+        var r = metrics.registry;
+        r.gauge("telebridge_inbound_queued", "Telegram messages fetched and waiting to be routed", handoff::size);
+        r.gauge("telebridge_poll_limit", "The limit the next getUpdates will ask for", () -> limit);
     }
 
     public void start() {
         if (running.getAndSet(true)) return;
+        routing = new Thread(this::routeLoop, "TeleBridge-Inbound");
+        routing.setDaemon(true);
+        routing.start();
         thread = new Thread(this::loop, "TeleBridge-Poller");
         thread.setDaemon(true);
         thread.start();
     }
 
+    /**
+     * Cancels the poll in flight, lets the router finish what was already fetched, and waits up to
+     * {@link #STOP_TIMEOUT_MS} for each thread.
+     */
     public void stop() {
         running.set(false);
-        if (thread != null) thread.interrupt();
+        Thread t = thread;
         thread = null;
+        if (t != null) t.interrupt();
+        join(t);
+        Thread rt = routing;
+        routing = null;
+        join(rt);
+    }
+
+    private static void join(Thread t) {
+        if (t == null) return;
+        try {
+            t.join(STOP_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (t.isAlive()) LOGGER.warn("[TeleBridge] {} did not stop within {} ms", t.getName(), STOP_TIMEOUT_MS);
     }
 
     private void loop() {
+        var backoff = new Backoff(BACKOFF_BASE_MS, BACKOFF_MAX_MS);
+        boolean catchUp = true;
         while (running.get()) {
+            int asked = Math.min(limit, handoff.remainingCapacity());
+            long pause;
             try {
-                tg.pollOnce(router::route);
-            } catch (InterruptedException ie) { /* stopping */ } catch (Exception ex) {
-                try {
-                    Thread.sleep(2000);
-                } catch (InterruptedException ignored) {
+                if (asked == 0) {
+                    // The router is behind by a full queue; fetching more would only confirm what cannot be held
+                    Thread.sleep(10);
+                    continue;
                 }
+                int received = tg.pollOnce(asked, catchUp ? 0 : -1, handoff::offer);
+                if (received == TelegramGateway.INBOUND_OFF) {
+                    // Turned off in the config, not an outage; look again in a while
+                    catchUp = true;
+                    Thread.sleep(INBOUND_OFF_RECHECK_MS);
+                    continue;
+                }
+                backoff.succeeded();
+                catchUp = false;
+                if (received >= asked) limit = Math.min(MAX_LIMIT, limit * 2);
+                else if (received < limit / 4) limit = Math.max(MIN_LIMIT, limit / 2);
+                continue;
+            } catch (InterruptedException ie) {
+                return;
+            } catch (Exception ex) {
+                metrics.pollErrors.increment();
+                // One warning per outage; the error counter keeps the rest
+                if (!backoff.failing()) LOGGER.warn("[TeleBridge] getUpdates failed, retrying with backoff: {}", ex.toString());
+                pause = backoff.failed(ex);
+            }
+
+            catchUp = true;
+            try {
+                Thread.sleep(pause);
+            } catch (InterruptedException ie) {
+                return;
+            }
+        }
+    }
+
+    private void routeLoop() {
+        // Keeps going after stop until the queue is empty: those updates are already confirmed to Telegram
+        while (running.get() || !handoff.isEmpty()) {
+            TelegramInboundMessage m;
+            try {
+                m = handoff.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ie) {
+                return;
+            }
+            if (m == null) continue;
+            try {
+                router.route(m);
+            } catch (RuntimeException e) {
+                LOGGER.warn("[TeleBridge] Inbound command failed", e);
             }
         }
     }
-}
\ No newline at end of file
+}
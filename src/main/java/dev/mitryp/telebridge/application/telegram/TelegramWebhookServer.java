@@ -0,0 +1,97 @@
+package dev.mitryp.telebridge.application.telegram;
+
+import com.google.gson.stream.JsonReader;
+import com.mojang.logging.LogUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dev.mitryp.telebridge.domain.interfaces.ConfigProvider;
+import dev.mitryp.telebridge.domain.interfaces.UpdateOffsetStore;
+import dev.mitryp.telebridge.domain.models.TelegramInboundMessage;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Embedded listener for Telegram webhook deliveries; the push-based alternative to {@link TelegramPoller}.
+ * <p>
+ * Updates are handled on a single thread, so they reach the consumer in the order Telegram sends them.
+ * Can be exercised locally without Telegram:
+ * {@code curl -H 'X-Telegram-Bot-Api-Secret-Token: <secret>' --data @update.json http://127.0.0.1:8443/telebridge}
+ */
+public final class TelegramWebhookServer {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final String SECRET_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+
+    private final ConfigProvider cfg;
+    private final DedupingSink sink;
+    private HttpServer server;
+    private ExecutorService exec;
+
+    public TelegramWebhookServer(ConfigProvider cfg, UpdateOffsetStore offsets, Consumer<TelegramInboundMessage> consumer) {
+        this.cfg = cfg;
+        this.sink = new DedupingSink(offsets, msg -> {
+            try {
+                consumer.accept(msg);
+            } catch (RuntimeException e) {
+                // Still acknowledged: Telegram would otherwise redeliver the same update forever
+                LOGGER.warn("[TeleBridge] Inbound command failed", e);
+            }
+        });
+    }
+
+    public synchronized void start() throws IOException {
+        if (server != null) return;
+        var c = cfg.get();
+        exec = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "TeleBridge-Webhook");
+            t.setDaemon(true);
+            return t;
+        });
+        server = HttpServer.create(new InetSocketAddress(c.webhookBindAddress, c.webhookPort), 0);
+        server.createContext(c.webhookPath, this::handle);
+        server.setExecutor(exec);
+        server.start();
+        LOGGER.info("[TeleBridge] Webhook listening on {}:{}{}", c.webhookBindAddress, c.webhookPort, c.webhookPath);
+    }
+
+    public synchronized void stop() {
+        if (server == null) return;
+        server.stop(0);
+        exec.shutdownNow();
+        server = null;
+        exec = null;
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        try {
+            if (!"POST".equals(ex.getRequestMethod())) {
+                ex.sendResponseHeaders(405, -1);
+                return;
+            }
+            var c = cfg.get();
+            String secret = ex.getRequestHeaders().getFirst(SECRET_HEADER);
+            if (secret == null || c.webhookSecret.isBlank() || !MessageDigest.isEqual(
+                    secret.getBytes(StandardCharsets.UTF_8), c.webhookSecret.getBytes(StandardCharsets.UTF_8))) {
+                ex.sendResponseHeaders(401, -1);
+                return;
+            }
+
+            try (var r = new JsonReader(new InputStreamReader(ex.getRequestBody(), StandardCharsets.UTF_8))) {
+                UpdatesParser.parseUpdate(r, c.telegramChatIdNumeric, sink);
+            } catch (IOException | IllegalStateException | NumberFormatException malformed) {
+                ex.sendResponseHeaders(400, -1);
+                return;
+            }
+            ex.sendResponseHeaders(200, -1);
+        } finally {
+            ex.close();
+        }
+    }
+}
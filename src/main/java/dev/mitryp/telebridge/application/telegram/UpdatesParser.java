@@ -0,0 +1,127 @@
+package dev.mitryp.telebridge.application.telegram;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import dev.mitryp.telebridge.domain.models.TelegramInboundMessage;
+
+import java.io.IOException;
+
+/**
+ * Streaming reader for a getUpdates response.
+ * Only the fields {@link TelegramInboundMessage} needs are materialised; everything else is skipped unread.
+ */
+public final class UpdatesParser {
+    @FunctionalInterface
+    public interface UpdateSink {
+        /** Called for every update in order; {@code msgOrNull} is null when the update was filtered out. */
+        void accept(long updateId, TelegramInboundMessage msgOrNull);
+    }
+
+    private UpdatesParser() {
+    }
+
+    /**
+     * @param chatId only text messages from this chat are delivered
+     */
+    public static void parse(JsonReader r, long chatId, UpdateSink sink) throws IOException {
+        if (r.peek() != JsonToken.BEGIN_OBJECT) return;
+        r.beginObject();
+        while (r.hasNext()) {
+            String name = r.nextName();
+            if (name.equals("result") && r.peek() == JsonToken.BEGIN_ARRAY) {
+                r.beginArray();
+                while (r.hasNext()) parseUpdate(r, chatId, sink);
+                r.endArray();
+            } else {
+                r.skipValue();
+            }
+        }
+        r.endObject();
+    }
+
+    /** Reads a single Update object, as delivered to a webhook. */
+    public static void parseUpdate(JsonReader r, long chatId, UpdateSink sink) throws IOException {
+        long updateId = -1;
+        TelegramInboundMessage msg = null;
+
+        r.beginObject();
+        while (r.hasNext()) {
+            switch (r.nextName()) {
+                case "update_id" -> updateId = r.nextLong();
+                case "message" -> msg = readMessage(r, chatId);
+                default -> r.skipValue();
+            }
+        }
+        r.endObject();
+
+        if (updateId >= 0) sink.accept(updateId, msg);
+    }
+
+    /** @return null when the message has no text or comes from another chat */
+    private static TelegramInboundMessage readMessage(JsonReader r, long chatId) throws IOException {
+        if (r.peek() != JsonToken.BEGIN_OBJECT) {
+            r.skipValue();
+            return null;
+        }
+        String text = null, username = null, firstName = null, lastName = null;
+        Integer messageId = null, threadId = null;
+        long userId = 0;
+        boolean sameChat = false;
+
+        r.beginObject();
+        while (r.hasNext()) {
+            switch (r.nextName()) {
+                case "text" -> text = nextStringOrNull(r);
+                case "message_id" -> messageId = r.nextInt();
+                case "message_thread_id" -> threadId = r.nextInt();
+                case "chat" -> sameChat = readChatId(r) == chatId && chatId != Long.MIN_VALUE;
+                case "from" -> {
+                    if (r.peek() != JsonToken.BEGIN_OBJECT) {
+                        r.skipValue();
+                        break;
+                    }
+                    r.beginObject();
+                    while (r.hasNext()) {
+                        switch (r.nextName()) {
+                            case "id" -> userId = r.nextLong();
+                            case "username" -> username = nextStringOrNull(r);
+                            case "first_name" -> firstName = nextStringOrNull(r);
+                            case "last_name" -> lastName = nextStringOrNull(r);
+                            default -> r.skipValue();
+                        }
+                    }
+                    r.endObject();
+                }
+                default -> r.skipValue();
+            }
+        }
+        r.endObject();
+
+        if (text == null || !sameChat || messageId == null) return null;
+        String display = (firstName != null ? firstName : "TG") + (lastName != null ? " " + lastName : "");
+        return new TelegramInboundMessage(text, username, display.trim(), messageId, threadId, userId);
+    }
+
+    private static long readChatId(JsonReader r) throws IOException {
+        if (r.peek() != JsonToken.BEGIN_OBJECT) {
+            r.skipValue();
+            return Long.MIN_VALUE;
+        }
+        long id = Long.MIN_VALUE;
+        r.beginObject();
+        while (r.hasNext()) {
+            if (r.nextName().equals("id")) id = r.nextLong();
+            else r.skipValue();
+        }
+        r.endObject();
+        return id;
+    }
+
+    private static String nextStringOrNull(JsonReader r) throws IOException {
+        if (r.peek() == JsonToken.NULL) {
+            r.nextNull();
+            return null;
+        }
+        return r.nextString();
+    }
+}
@@ -5,11 +5,14 @@ import dev.mitryp.telebridge.domain.interfaces.MinecraftBridge;
 import dev.mitryp.telebridge.domain.interfaces.TelegramCommand;
 import dev.mitryp.telebridge.domain.interfaces.TelegramGateway;
 
+import java.util.List;
 import java.util.StringJoiner;
 
 public final class OnlineCommand implements TelegramCommand {
     private final MinecraftBridge mc;
     private final TelegramGateway tg;
+    /** Last reply with the roster it was built from; the bridge replaces that list whenever it changes. */
+    private volatile Cached cached;
 
     public OnlineCommand(MinecraftBridge mc, TelegramGateway tg) {
         this.mc = mc;
@@ -19,9 +22,28 @@ public final class OnlineCommand implements TelegramCommand {
     @Override
     public void handle(String args, TelegramInboundMessage in) {
         var list = mc.onlineNames();
+        Cached c = cached;
+        if (c == null || c.roster != list) {
+            c = new Cached(list, format(list));
+            cached = c;
+        }
+        tg.sendReply(c.reply, in.replyMessageId, in.threadId);
+    }
+
+    private static String format(List<String> list) {
         StringJoiner j = new StringJoiner("\n");
-        j.add("Current online:");
+        j.add("Current online (" + list.size() + "):");
         list.forEach(j::add);
-        tg.sendReply(j.toString(), in.replyMessageId, in.threadId);
+        return j.toString();
+    }
+
+    private static final class Cached {
+        final List<String> roster;
+        final String reply;
+
+        Cached(List<String> roster, String reply) {
+            this.roster = roster;
+            this.reply = reply;
+        }
     }
 }
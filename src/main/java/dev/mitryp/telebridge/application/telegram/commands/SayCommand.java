@@ -1,23 +1,53 @@
 package dev.mitryp.telebridge.application.telegram.commands;
 
 import dev.mitryp.telebridge.application.services.NameResolver;
+import dev.mitryp.telebridge.application.services.SenderRateLimiter;
+import dev.mitryp.telebridge.domain.interfaces.ConfigProvider;
 import dev.mitryp.telebridge.domain.models.TelegramInboundMessage;
 import dev.mitryp.telebridge.domain.interfaces.MinecraftBridge;
 import dev.mitryp.telebridge.domain.interfaces.TelegramCommand;
+import dev.mitryp.telebridge.domain.interfaces.TelegramGateway;
 
 public final class SayCommand implements TelegramCommand {
     private final MinecraftBridge mc;
     private final NameResolver names;
+    private final TelegramGateway tg;
+    private final ConfigProvider cfg;
+    private final SenderRateLimiter limiter;
 
-    public SayCommand(MinecraftBridge mc, NameResolver names) {
+    public SayCommand(MinecraftBridge mc, NameResolver names, TelegramGateway tg, ConfigProvider cfg,
+                      SenderRateLimiter limiter) {
         this.mc = mc;
         this.names = names;
+        this.tg = tg;
+        this.cfg = cfg;
+        this.limiter = limiter;
+    }
+
+    /** Consecutive /say lines must reach the game chat in the order they were sent. */
+    @Override
+    public boolean ordered() {
+        return true;
     }
 
     @Override
     public void handle(String args, TelegramInboundMessage in) {
         if (args == null || args.isEmpty()) return;
-        String name = names.resolveEffective(in.tgUsernameOrNull, in.displayName);
-        mc.broadcast("[" + name + "] " + args);
+        long now = System.nanoTime();
+        switch (limiter.check(in.userId, args, now)) {
+            case ALLOW -> {
+                String name = names.resolveEffective(in.tgUsernameOrNull, in.displayName);
+                mc.broadcast("[" + name + "] " + args);
+            }
+            case REPEAT -> {
+                // Already shown in game
+            }
+            case THROTTLED -> {
+                if (!limiter.shouldNotify(in.userId, now)) return;
+                var c = cfg.get();
+                tg.sendReply("Slow down: /say is limited to " + c.inboundSayPerMinute + " messages a minute. "
+                        + "Messages over the limit are not shown in game.", in.replyMessageId, in.threadId);
+            }
+        }
     }
 }
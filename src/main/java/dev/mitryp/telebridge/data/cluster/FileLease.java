@@ -0,0 +1,49 @@
+package dev.mitryp.telebridge.data.cluster;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Leadership among processes sharing a directory: whoever holds the OS lock on {@code file} leads. The OS drops the
+ * lock when its holder exits for any reason, so a crashed leader never has to be timed out.
+ */
+public final class FileLease {
+    private final Path file;
+    private FileChannel ch;
+    private FileLock lock;
+
+    public FileLease(Path file) {
+        this.file = file;
+    }
+
+    /** @return true if this process holds the lease, whether just now or from an earlier call */
+    public synchronized boolean tryAcquire() {
+        if (lock != null) return true;
+        try {
+            if (ch == null) ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            lock = ch.tryLock();
+        } catch (IOException | OverlappingFileLockException ignored) {
+            // Held elsewhere in this JVM or the directory is unusable; both mean "not ours"
+        }
+        return lock != null;
+    }
+
+    public synchronized boolean isHeld() {
+        return lock != null;
+    }
+
+    public synchronized void release() {
+        if (ch == null) return;
+        try {
+            // Closing the channel releases the lock with it
+            ch.close();
+        } catch (IOException ignored) {
+        }
+        ch = null;
+        lock = null;
+    }
+}
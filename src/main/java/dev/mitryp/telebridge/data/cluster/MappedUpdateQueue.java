@@ -0,0 +1,184 @@
+package dev.mitryp.telebridge.data.cluster;
+
+import dev.mitryp.telebridge.domain.models.TelegramInboundMessage;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Single-writer, many-reader ring of inbound messages in a memory-mapped file, shared by every server in a cluster.
+ * <p>
+ * Header: {@code long writePos | long updateOffset}. Positions only grow; a record lives at {@code pos % DATA_BYTES}
+ * as {@code int length | long userId | int replyMessageId | int threadId | text | username | displayName}, padded to
+ * 8 bytes, and a record that would not fit before the end leaves a {@link #WRAP} marker instead. The writer fills in
+ * the record, then publishes the new {@code writePos} with release semantics.
+ * <p>
+ * Readers keep their own position and are not waited for: one that falls more than a lap behind skips to the
+ * newest record and counts what it missed.
+ */
+public final class MappedUpdateQueue {
+    private static final int FILE_BYTES = 1 << 20;
+    private static final int HEADER_BYTES = 64;
+    private static final int DATA_BYTES = FILE_BYTES - HEADER_BYTES;
+    private static final int MAX_RECORD_BYTES = 64 << 10;
+    private static final int WRITE_POS = 0;
+    private static final int UPDATE_OFFSET = 8;
+    private static final int WRAP = -1;
+    private static final int NO_VALUE = Integer.MIN_VALUE;
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private final FileChannel ch;
+    private final MappedByteBuffer buf;
+    private final LongAdder lost = new LongAdder();
+
+    public MappedUpdateQueue(Path file) throws IOException {
+        ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, FILE_BYTES);
+    }
+
+    /** Where a reader joining now starts: only messages published from here on. */
+    public long tail() {
+        return (long) LONGS.getAcquire(buf, WRITE_POS);
+    }
+
+    /** The getUpdates offset the leader has consumed up to, 0 if none was recorded. */
+    public long updateOffset() {
+        return (long) LONGS.getAcquire(buf, UPDATE_OFFSET);
+    }
+
+    /** Leader only. */
+    public void setUpdateOffset(long offset) {
+        LONGS.setRelease(buf, UPDATE_OFFSET, offset);
+    }
+
+    /** Leader only; a message too large for one record is dropped. */
+    public void publish(TelegramInboundMessage m) {
+        byte[] text = bytes(m.text);
+        byte[] username = bytes(m.tgUsernameOrNull);
+        byte[] displayName = bytes(m.displayName);
+        int length = 4 + 8 + 4 + 4 + 12 + len(text) + len(username) + len(displayName);
+        if (length > MAX_RECORD_BYTES) return;
+
+        long pos = tail();
+        int at = (int) (pos % DATA_BYTES);
+        if (DATA_BYTES - at < length) {
+            buf.putInt(HEADER_BYTES + at, WRAP);
+            pos += DATA_BYTES - at;
+            at = 0;
+        }
+        int i = HEADER_BYTES + at;
+        buf.putInt(i, length);
+        buf.putLong(i + 4, m.userId);
+        buf.putInt(i + 12, m.replyMessageId == null ? NO_VALUE : m.replyMessageId);
+        buf.putInt(i + 16, m.threadId == null ? NO_VALUE : m.threadId);
+        i = putBytes(i + 20, text);
+        i = putBytes(i, username);
+        putBytes(i, displayName);
+        LONGS.setRelease(buf, WRITE_POS, pos + align(length));
+    }
+
+    /**
+     * Hands every message published since {@code from} to {@code consumer}.
+     *
+     * @return the position to pass next time
+     */
+    public long read(long from, Consumer<TelegramInboundMessage> consumer) {
+        long end = tail();
+        // Behind us only if the file was recreated under us
+        if (from > end) return end;
+        long pos = from;
+        while (pos < end) {
+            // The writer may be filling in up to one record past the tail, over the oldest data
+            if (end - pos > DATA_BYTES - MAX_RECORD_BYTES) return skipTo(end);
+            int at = (int) (pos % DATA_BYTES);
+            int length = buf.getInt(HEADER_BYTES + at);
+            if (length == WRAP) {
+                pos += DATA_BYTES - at;
+                continue;
+            }
+            if (length < 32 || length > MAX_RECORD_BYTES || at + length > DATA_BYTES) return skipTo(end);
+
+            int i = HEADER_BYTES + at;
+            long userId = buf.getLong(i + 4);
+            int reply = buf.getInt(i + 12);
+            int thread = buf.getInt(i + 16);
+            int[] cursor = {i + 20};
+            String text = getString(cursor, i + length);
+            String username = getString(cursor, i + length);
+            String displayName = getString(cursor, i + length);
+            // Re-check after copying: the writer may have lapped us mid-record
+            long now = tail();
+            if (now - pos > DATA_BYTES - MAX_RECORD_BYTES) return skipTo(now);
+
+            if (text != null) {
+                consumer.accept(new TelegramInboundMessage(text, username, displayName,
+                        reply == NO_VALUE ? null : reply, thread == NO_VALUE ? null : thread, userId));
+            }
+            pos += align(length);
+        }
+        return pos;
+    }
+
+    /** Messages readers skipped after falling a lap behind the writer, counted once per skip. */
+    public long lostCount() {
+        return lost.sum();
+    }
+
+    public void close() {
+        try {
+            ch.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private long skipTo(long end) {
+        lost.increment();
+        return end;
+    }
+
+    private int putBytes(int i, byte[] b) {
+        if (b == null) {
+            buf.putInt(i, -1);
+            return i + 4;
+        }
+        buf.putInt(i, b.length);
+        buf.put(i + 4, b);
+        return i + 4 + b.length;
+    }
+
+    /** @return null for a null string, or for a length running past {@code end}, which only a torn record has */
+    private String getString(int[] cursor, int end) {
+        int i = cursor[0];
+        if (i + 4 > end) return null;
+        int n = buf.getInt(i);
+        if (n < 0 || n > end - i - 4) {
+            cursor[0] = i + 4;
+            return null;
+        }
+        byte[] b = new byte[n];
+        buf.get(i + 4, b);
+        cursor[0] = i + 4 + n;
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(String s) {
+        return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int len(byte[] b) {
+        return b == null ? 0 : b.length;
+    }
+
+    private static int align(int length) {
+        return (length + 7) & ~7;
+    }
+}
@@ -0,0 +1,53 @@
+package dev.mitryp.telebridge.data.repositories;
+
+import dev.mitryp.telebridge.domain.interfaces.LinkRepository;
+
+/**
+ * Lets the mod hand out one {@link LinkRepository} at construction and choose the store behind it once the config
+ * is loaded, which happens later.
+ */
+public final class DelegatingLinkRepository implements LinkRepository {
+    private volatile LinkRepository delegate;
+
+    public DelegatingLinkRepository(LinkRepository initial) {
+        this.delegate = initial;
+    }
+
+    public LinkRepository delegate() {
+        return delegate;
+    }
+
+    public void use(LinkRepository next) {
+        delegate = next;
+    }
+
+    @Override
+    public String resolveMcFromTg(String tgUserOrNull) {
+        return delegate.resolveMcFromTg(tgUserOrNull);
+    }
+
+    @Override
+    public void link(String tgUsername, String mcName) {
+        delegate.link(tgUsername, mcName);
+    }
+
+    @Override
+    public String unlinkByMc(String mcName) {
+        return delegate.unlinkByMc(mcName);
+    }
+
+    @Override
+    public String findTgByMc(String mcName) {
+        return delegate.findTgByMc(mcName);
+    }
+
+    @Override
+    public boolean isLinked(String tgUsername) {
+        return delegate.isLinked(tgUsername);
+    }
+
+    @Override
+    public void flush() {
+        delegate.flush();
+    }
+}
@@ -0,0 +1,131 @@
+package dev.mitryp.telebridge.data.repositories;
+
+import dev.mitryp.telebridge.domain.interfaces.UpdateOffsetStore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the last handled update_id, a small ring of recently handled ids and the time of the last mark in a
+ * fixed-size file. Marks older than {@link #STALE_AFTER_MILLIS} are not trusted, see {@link #isStale()}. Every mark is written through to the page cache; fsync happens at most once per {@link #FORCE_INTERVAL_NANOS}
+ * and on close. A JVM crash loses nothing; a power loss loses at most the marks written since the last fsync.
+ */
+public final class FileUpdateOffsetStore implements UpdateOffsetStore {
+    private static final int WINDOW = 128;
+    private static final long FORCE_INTERVAL_NANOS = 1_000_000_000L;
+    private static final int V1_BYTES = Long.BYTES + Integer.BYTES + WINDOW * Long.BYTES;
+    private static final int FILE_BYTES = V1_BYTES + Long.BYTES;
+    // Telegram renumbers after a week without updates; a day early costs nothing, nothing is left unconfirmed
+    private static final long STALE_AFTER_MILLIS = TimeUnit.DAYS.toMillis(6);
+
+    private final ByteBuffer buf = ByteBuffer.allocate(FILE_BYTES);
+    private final long[] recent = new long[WINDOW];
+    private FileChannel ch;
+    private long last = -1;
+    private int head;
+    private int size;
+    private long markedAt;
+    private long lastForce = System.nanoTime();
+    private boolean dirty;
+
+    public FileUpdateOffsetStore(Path file) {
+        Arrays.fill(recent, -1);
+        try {
+            Files.createDirectories(file.getParent());
+            ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (ch.size() >= V1_BYTES) {
+                ch.read(buf, 0);
+                buf.flip();
+                last = buf.getLong();
+                head = Math.floorMod(buf.getInt(), WINDOW);
+                for (int i = 0; i < WINDOW; i++) {
+                    recent[i] = buf.getLong();
+                    if (recent[i] >= 0) size++;
+                }
+                // Files written before the time was stored: the last write is the last mark
+                markedAt = buf.remaining() >= Long.BYTES ? buf.getLong() : Files.getLastModifiedTime(file).toMillis();
+            }
+        } catch (IOException ignored) {
+            // Runs without persistence; the first poll after a restart may see old updates again
+        }
+    }
+
+    @Override
+    public synchronized long lastUpdateId() {
+        return last;
+    }
+
+    @Override
+    public synchronized boolean isSeen(long updateId) {
+        long oldest = last;
+        for (long id : recent) {
+            if (id == updateId) return true;
+            if (id >= 0) oldest = Math.min(oldest, id);
+        }
+        // Telegram delivers in order and redelivers only what it has not seen confirmed, which the window still
+        // holds; an id below it is a new numbering, and keeping the old marks would drop every update after it
+        if (updateId < oldest) reset();
+        return false;
+    }
+
+    @Override
+    public synchronized boolean isStale() {
+        return last >= 0 && System.currentTimeMillis() - markedAt > STALE_AFTER_MILLIS;
+    }
+
+    @Override
+    public synchronized void reset() {
+        Arrays.fill(recent, -1);
+        last = -1;
+        head = 0;
+        size = 0;
+        write();
+    }
+
+    @Override
+    public synchronized void markProcessed(long updateId) {
+        recent[head] = updateId;
+        head = (head + 1) % WINDOW;
+        if (size < WINDOW) size++;
+        last = Math.max(last, updateId);
+        markedAt = System.currentTimeMillis();
+        write();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (ch == null) return;
+        try {
+            if (dirty) ch.force(false);
+            ch.close();
+        } catch (IOException ignored) {
+        }
+        ch = null;
+    }
+
+    private void write() {
+        if (ch == null) return;
+        buf.clear();
+        buf.putLong(last).putInt(head);
+        for (long id : recent) buf.putLong(id);
+        buf.putLong(markedAt);
+        buf.flip();
+        try {
+            ch.write(buf, 0);
+            dirty = true;
+            long now = System.nanoTime();
+            if (now - lastForce >= FORCE_INTERVAL_NANOS) {
+                ch.force(false);
+                lastForce = now;
+                dirty = false;
+            }
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -3,60 +3,146 @@ package dev.mitryp.telebridge.data.repositories;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import dev.mitryp.telebridge.domain.interfaces.LinkRepository;
+import dev.mitryp.telebridge.utils.metrics.Histogram;
 
 import java.io.*;
 import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.HashMap;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
+/**
+ * Links kept in two indexes, tg→mc and mc→tg, so both lookups are O(1). A Telegram name links to one player, but a
+ * player may have several Telegram names; mc→tg lists them oldest first. Readers never lock; writers serialise on
+ * {@link #writeLock} and replace a player's list rather than change it.
+ * <p>
+ * Persistence is write-behind: a mutation only updates memory and queues a journal line. A background writer
+ * appends queued lines to {@code <file>.journal} and, every {@link #COMPACT_EVERY} lines, writes a full snapshot
+ * to a temp file and renames it over {@code file}. Loading reads the snapshot and replays the journal on top;
+ * both operations are idempotent, so a line that is in both is harmless.
+ */
 public final class JsonLinkRepository implements LinkRepository {
     private static final Gson GSON = new Gson();
     private static final Type MAP_TYPE = new TypeToken<Map<String, String>>() {
     }.getType();
+    private static final int COMPACT_EVERY = 512;
+
     private final Path file;
-    private final Map<String, String> tgToMc = new HashMap<>(); // key: @username (lowercase, no '@')
+    private final Path journal;
+    private final Path tmp;
+    private final Histogram saveTime;
+    private final Object writeLock = new Object();
+    private final Map<String, String> tgToMc = new ConcurrentHashMap<>(); // key: @username (lowercase, no '@')
+    private final Map<String, List<String>> mcToTg = new ConcurrentHashMap<>();
+    private final Queue<JournalEntry> pending = new ConcurrentLinkedQueue<>();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "TeleBridge-Links");
+        t.setDaemon(true);
+        return t;
+    });
+    private int journalLines; // writer thread only
 
     public JsonLinkRepository(Path file) {
+        this(file, new Histogram(1e9));
+    }
+
+    /** @param saveTime receives the duration of every journal append and snapshot rewrite, in nanos */
+    public JsonLinkRepository(Path file, Histogram saveTime) {
         this.file = file;
+        this.saveTime = saveTime;
+        this.journal = file.resolveSibling(file.getFileName() + ".journal");
+        this.tmp = file.resolveSibling(file.getFileName() + ".tmp");
         load();
     }
 
     @Override
-    public synchronized String resolveMcFromTg(String tgUserOrNull) {
+    public String resolveMcFromTg(String tgUserOrNull) {
         if (tgUserOrNull == null) return null;
-        return tgToMc.get(tgUserOrNull.toLowerCase(Locale.ROOT));
+        return tgToMc.get(lowerCase(tgUserOrNull));
     }
 
     @Override
-    public synchronized void link(String tgUsername, String mcName) {
+    public void link(String tgUsername, String mcName) {
         if (tgUsername == null || tgUsername.isBlank() || mcName == null || mcName.isBlank()) return;
-        tgToMc.put(normalize(tgUsername), mcName);
-        save();
+        synchronized (writeLock) {
+            String tg = normalize(tgUsername);
+            put(tg, mcName);
+            record(new JournalEntry(JournalEntry.LINK, tg, mcName));
+        }
     }
 
     @Override
-    public synchronized String unlinkByMc(String mcName) {
+    public String unlinkByMc(String mcName) {
         if (mcName == null) return null;
-        String key = tgToMc.entrySet().stream()
-                .filter(e -> mcName.equals(e.getValue()))
-                .map(Map.Entry::getKey)
-                .findFirst().orElse(null);
-
-        if (key != null) {
-            tgToMc.remove(key);
-            save();
+        synchronized (writeLock) {
+            List<String> tgs = mcToTg.get(mcName);
+            if (tgs == null) return null;
+            String key = tgs.get(0);
+            tgToMc.remove(key, mcName);
+            unindex(mcName, key);
+            record(new JournalEntry(JournalEntry.UNLINK, key, mcName));
+            return key;
         }
+    }
 
-        return key; // may be null
+    @Override
+    public String findTgByMc(String mcName) {
+        if (mcName == null) return null;
+        List<String> tgs = mcToTg.get(mcName);
+        return tgs == null ? null : tgs.get(0);
     }
 
+    /** Blocks until every queued change is on disk and folded into the snapshot. */
     @Override
-    public synchronized String findTgByMc(String mcName) {
-        return tgToMc.entrySet().stream().filter(e -> e.getValue().equals(mcName)).map(Map.Entry::getKey).findFirst().orElse(null);
+    public void flush() {
+        try {
+            writer.submit(() -> {
+                drainJournal();
+                compact();
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | RejectedExecutionException ignored) {
+        }
+    }
+
+    private void record(JournalEntry entry) {
+        pending.add(entry);
+        writer.execute(this::drainJournal);
+    }
+
+    /** Relinking a Telegram name moves it to the new player; the player's other names stay. */
+    private void put(String tg, String mc) {
+        String previousMc = tgToMc.put(tg, mc);
+        if (mc.equals(previousMc)) return;
+        if (previousMc != null) unindex(previousMc, tg);
+        mcToTg.compute(mc, (k, tgs) -> {
+            if (tgs == null) return List.of(tg);
+            List<String> next = new ArrayList<>(tgs);
+            next.add(tg);
+            return List.copyOf(next);
+        });
+    }
+
+    private void unindex(String mc, String tg) {
+        mcToTg.computeIfPresent(mc, (k, tgs) -> {
+            List<String> next = new ArrayList<>(tgs);
+            next.remove(tg);
+            return next.isEmpty() ? null : List.copyOf(next);
+        });
     }
 
     private String normalize(String raw) {
@@ -64,22 +150,93 @@ public final class JsonLinkRepository implements LinkRepository {
         return norm.toLowerCase(Locale.ROOT).trim();
     }
 
+    /** Most usernames arrive already lowercase; only allocate when there is something to fold. */
+    private static String lowerCase(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (Character.toLowerCase(c) != c) return s.toLowerCase(Locale.ROOT);
+        }
+        return s;
+    }
+
     private void load() {
         try {
             Files.createDirectories(file.getParent());
             if (Files.exists(file))
                 try (Reader r = new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8)) {
                     Map<String, String> m = GSON.fromJson(r, MAP_TYPE);
-                    if (m != null) tgToMc.putAll(m);
+                    if (m != null) m.forEach(this::put);
+                }
+            if (Files.exists(journal))
+                try (BufferedReader r = Files.newBufferedReader(journal, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = r.readLine()) != null) {
+                        JournalEntry e = parse(line);
+                        if (e == null) break; // torn last line after a crash
+                        if (JournalEntry.LINK.equals(e.op)) put(e.tg, e.mc);
+                        else if (tgToMc.remove(e.tg, e.mc)) unindex(e.mc, e.tg);
+                        journalLines++;
+                    }
                 }
         } catch (IOException ignored) {
         }
     }
 
-    private void save() {
-        try (Writer w = new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8)) {
-            GSON.toJson(tgToMc, MAP_TYPE, w);
+    private static JournalEntry parse(String line) {
+        try {
+            JournalEntry e = GSON.fromJson(line, JournalEntry.class);
+            return e == null || e.op == null || e.tg == null || e.mc == null ? null : e;
+        } catch (RuntimeException malformed) {
+            return null;
+        }
+    }
+
+    /** Appends everything queued so far in one write; cost depends on the changes, not on the number of links. */
+    private void drainJournal() {
+        if (pending.isEmpty()) return;
+        long start = System.nanoTime();
+        try (Writer w = Files.newBufferedWriter(journal, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            JournalEntry e;
+            while ((e = pending.poll()) != null) {
+                w.write(GSON.toJson(e));
+                w.write('\n');
+                journalLines++;
+            }
+        } catch (IOException ignored) {
+        }
+        saveTime.recordSince(start);
+        if (journalLines >= COMPACT_EVERY) compact();
+    }
+
+    private void compact() {
+        if (journalLines == 0 && Files.exists(file)) return;
+        long start = System.nanoTime();
+        try {
+            try (Writer w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                GSON.toJson(Map.copyOf(tgToMc), MAP_TYPE, w);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            // Lines queued after the snapshot was taken are still in pending and will be appended again
+            Files.deleteIfExists(journal);
+            journalLines = 0;
         } catch (IOException ignored) {
         }
+        saveTime.recordSince(start);
+    }
+
+    private static final class JournalEntry {
+        static final String LINK = "link";
+        static final String UNLINK = "unlink";
+
+        final String op;
+        final String tg;
+        final String mc;
+
+        JournalEntry(String op, String tg, String mc) {
+            this.op = op;
+            this.tg = tg;
+            this.mc = mc;
+        }
     }
 }
@@ -0,0 +1,560 @@
+package dev.mitryp.telebridge.data.repositories;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.mojang.logging.LogUtils;
+import dev.mitryp.telebridge.domain.interfaces.LinkRepository;
+import dev.mitryp.telebridge.utils.metrics.Histogram;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Links in a memory-mapped hash file that several server processes share. Every lookup reads the mapping, so a link
+ * made on one server is visible to the others on their next lookup.
+ * <p>
+ * The file holds two open-addressing tables of fixed 64-byte slots, one keyed by Telegram name and one by Minecraft
+ * name, each slot carrying both names. A player may have several Telegram names, so the Minecraft table can hold
+ * several slots with the same key; the Telegram table never does. Every link is numbered as it is made, and a player's
+ * oldest name is the one {@link #findTgByMc} and {@link #unlinkByMc} answer, as in {@link JsonLinkRepository}.
+ * Readers take no lock: they read the header's version, probe, and retry if the version was odd or changed meanwhile. Writers serialise on an OS lock on {@code <file>.lock}, make the version odd
+ * while they work, and bump it to the next even number when done.
+ * <p>
+ * Tables are rebuilt into a fresh file, renamed over the old one, when three quarters of the slots are taken or were
+ * deleted. The old file is then flagged as moved, and each process reopens the new one on its next access.
+ * <p>
+ * Each server merges its own {@code telebridge-links.json} into the index the first time it opens it, and records
+ * the index's id in {@code <json>.imported} so that it does not merge again. Until that has happened the server
+ * never overwrites its JSON file, so links only it knew about cannot be lost.
+ */
+public final class MappedLinkRepository implements LinkRepository {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final Gson GSON = new Gson();
+    private static final Type MAP_TYPE = new TypeToken<Map<String, String>>() {
+    }.getType();
+
+    private static final int MAGIC = 0x54424c4b; // "TBLK"
+    private static final int HEADER_BYTES = 64;
+    private static final int SLOT_BYTES = 64;
+    private static final int INITIAL_SLOTS = 1024;
+    private static final int MAX_READ_RETRIES = 64;
+
+    // Header: int magic | int slots | long version | int live | int deleted[2] | int moved | long id | int seq
+    private static final int H_MAGIC = 0;
+    private static final int H_SLOTS = 4;
+    private static final int H_VERSION = 8;
+    private static final int H_LIVE = 16;
+    private static final int H_DELETED = 20;
+    private static final int H_MOVED = 28;
+    private static final int H_ID = 32;
+    private static final int H_SEQ = 40;
+
+    // Slot: byte state | byte tgLength | byte mcLength | pad | int hash | tg[32] | mc[20] | int seq
+    // Minecraft names are at most 16 bytes; the seq took the last four of mc[24], which indexes from before it leave 0
+    private static final int S_TG_LENGTH = 1;
+    private static final int S_MC_LENGTH = 2;
+    private static final int S_HASH = 4;
+    private static final int S_TG = 8;
+    private static final int S_MC = 40;
+    private static final int S_SEQ = 60;
+    private static final int TG_BYTES = 32;
+    private static final int MC_BYTES = 20;
+    private static final byte EMPTY = 0;
+    private static final byte USED = 1;
+    private static final byte DELETED = 2;
+
+    private static final int TG = 0;
+    private static final int MC = 1;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private final Path file;
+    private final Path tmp;
+    private final Path lockFile;
+    private final Path json;
+    private final Histogram saveTime;
+    private final boolean imported;
+    private volatile Mapping map;
+
+    /**
+     * @param json this server's own link file: merged into the index the first time this server opens it, and then
+     *             rewritten from the index on {@link #flush()} so switching back to it loses nothing
+     */
+    public MappedLinkRepository(Path file, Path json, Histogram saveTime) throws IOException {
+        this.file = file;
+        this.tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        this.lockFile = file.resolveSibling(file.getFileName() + ".lock");
+        this.json = json;
+        this.saveTime = saveTime;
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+
+        try (FileChannel lc = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            lc.lock(); // released with the channel
+            if (!isIndex(file)) install(build(INITIAL_SLOTS, newId(), new String[0][]));
+            map = Mapping.open(file);
+            // Indexes created before they had ids
+            if (map.buf.getLong(H_ID) == 0) map.buf.putLong(H_ID, newId());
+        }
+        this.imported = json != null && importOnce(json);
+    }
+
+    /** @return whether {@code from} is now part of this index, so exporting over it loses nothing */
+    private boolean importOnce(Path from) {
+        Path marker = from.resolveSibling(from.getFileName() + ".imported");
+        String id = Long.toHexString(current().buf.getLong(H_ID));
+        try {
+            if (Files.exists(marker) && Files.readString(marker, StandardCharsets.UTF_8).trim().equals(id)) return true;
+            if (Files.exists(from)) {
+                LOGGER.info("[TeleBridge] Merged {} links from {} into {}", importJson(from), from, file);
+            }
+            Files.writeString(marker, id, StandardCharsets.UTF_8);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("[TeleBridge] Could not merge {} into the shared link index; it will not be overwritten", from, e);
+            return false;
+        }
+    }
+
+    @Override
+    public String resolveMcFromTg(String tgUserOrNull) {
+        if (tgUserOrNull == null) return null;
+        return lookup(TG, utf8(normalize(tgUserOrNull)));
+    }
+
+    @Override
+    public String findTgByMc(String mcName) {
+        return mcName == null ? null : lookup(MC, utf8(mcName));
+    }
+
+    @Override
+    public void link(String tgUsername, String mcName) {
+        byte[][] link = encode(tgUsername, mcName);
+        if (link == null) return;
+        mutate(() -> {
+            linkLocked(link[0], link[1]);
+            return null;
+        });
+    }
+
+    @Override
+    public String unlinkByMc(String mcName) {
+        if (mcName == null) return null;
+        byte[] mc = utf8(mcName);
+        return mutate(() -> {
+            Mapping m = map;
+            int at = oldest(m, mc, hash(mc));
+            if (at < 0) return null;
+            byte[] tg = name(m, at, TG);
+            long v = begin(m);
+            remove(m, MC, at);
+            int other = find(m, TG, tg, hash(tg));
+            if (other >= 0) remove(m, TG, other);
+            m.buf.putInt(H_LIVE, m.buf.getInt(H_LIVE) - 1);
+            end(m, v);
+            return new String(tg, StandardCharsets.UTF_8);
+        });
+    }
+
+    /** Forces the mapping to disk and, once this server's JSON file has been merged in, rewrites it from the index. */
+    @Override
+    public void flush() {
+        map.force();
+        if (!imported) return;
+        try {
+            exportJson(json);
+        } catch (IOException e) {
+            LOGGER.warn("[TeleBridge] Could not export links to {}", json, e);
+        }
+    }
+
+    /**
+     * Adds the links of a {@code telebridge-links.json} file (tg → mc). A Telegram name the index already links keeps
+     * its player.
+     *
+     * @return the number of links added
+     */
+    public int importJson(Path from) throws IOException {
+        Map<String, String> links;
+        try (Reader r = Files.newBufferedReader(from, StandardCharsets.UTF_8)) {
+            links = GSON.fromJson(r, MAP_TYPE);
+        }
+        if (links == null) return 0;
+        // One lock for the whole file
+        Integer added = mutate(() -> {
+            int n = 0;
+            for (var e : links.entrySet()) {
+                byte[][] link = encode(e.getKey(), e.getValue());
+                if (link == null || find(map, TG, link[0], hash(link[0])) >= 0) continue;
+                linkLocked(link[0], link[1]);
+                n++;
+            }
+            return n;
+        });
+        if (added == null) throw new IOException("Link index " + file + " was not updated");
+        return added;
+    }
+
+    /** Writes every link as a {@code telebridge-links.json} file (tg → mc), atomically replacing {@code to}. */
+    public void exportJson(Path to) throws IOException {
+        Map<String, String> links = new LinkedHashMap<>();
+        for (String[] e : snapshot()) links.put(e[0], e[1]);
+        Path part = to.resolveSibling(to.getFileName() + ".tmp");
+        try (Writer w = Files.newBufferedWriter(part, StandardCharsets.UTF_8)) {
+            GSON.toJson(links, MAP_TYPE, w);
+        }
+        Files.move(part, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /* ===================== Reads ===================== */
+
+    private String lookup(int table, byte[] key) {
+        int h = hash(key);
+        for (int attempt = 0; ; attempt++) {
+            Mapping m = current();
+            long v = (long) LONGS.getAcquire(m.buf, H_VERSION);
+            if ((v & 1) != 0 && attempt < MAX_READ_RETRIES) {
+                Thread.onSpinWait();
+                continue;
+            }
+            int at = table == MC ? oldest(m, key, h) : find(m, table, key, h);
+            String other = at < 0 ? null : new String(name(m, at, 1 - table), StandardCharsets.UTF_8);
+            VarHandle.loadLoadFence();
+            // A writer that died mid-update leaves the version odd until the next write repairs it; answer anyway
+            if ((long) LONGS.getOpaque(m.buf, H_VERSION) == v || attempt >= MAX_READ_RETRIES) return other;
+        }
+    }
+
+    /** Every link as {tg, mc}, read consistently. */
+    private String[][] snapshot() {
+        for (int attempt = 0; ; attempt++) {
+            Mapping m = current();
+            long v = (long) LONGS.getAcquire(m.buf, H_VERSION);
+            String[][] out = entries(m);
+            VarHandle.loadLoadFence();
+            if (((v & 1) == 0 && (long) LONGS.getOpaque(m.buf, H_VERSION) == v) || attempt >= MAX_READ_RETRIES) return out;
+            Thread.onSpinWait();
+        }
+    }
+
+    /** Oldest link first, so a rebuild that numbers them afresh keeps their order. */
+    private static String[][] entries(Mapping m) {
+        List<Integer> used = new ArrayList<>();
+        for (int i = 0; i < m.slots; i++) {
+            int at = slot(m, TG, i);
+            if (m.buf.get(at) == USED) used.add(at);
+        }
+        used.sort(Comparator.comparingInt(at -> m.buf.getInt(at + S_SEQ)));
+        String[][] out = new String[used.size()][];
+        for (int i = 0; i < out.length; i++) {
+            int at = used.get(i);
+            out[i] = new String[]{
+                    new String(name(m, at, TG), StandardCharsets.UTF_8),
+                    new String(name(m, at, MC), StandardCharsets.UTF_8)};
+        }
+        return out;
+    }
+
+    /** @return the first slot offset holding {@code key} in {@code table}, or -1 */
+    private static int find(Mapping m, int table, byte[] key, int h) {
+        return find(m, table, key, h, null);
+    }
+
+    /** @return the slot offset of the oldest link to the player {@code mc}, or -1 */
+    private static int oldest(Mapping m, byte[] mc, int h) {
+        int mask = m.slots - 1;
+        int best = -1;
+        for (int i = 0, idx = h & mask; i < m.slots; i++, idx = (idx + 1) & mask) {
+            int at = slot(m, MC, idx);
+            byte state = m.buf.get(at);
+            if (state == EMPTY) break;
+            if (state == USED && m.buf.getInt(at + S_HASH) == h && nameEquals(m, at, MC, mc)
+                    && (best < 0 || m.buf.getInt(at + S_SEQ) < m.buf.getInt(best + S_SEQ))) best = at;
+        }
+        return best;
+    }
+
+    /** @param tg when not null, also the Telegram name the slot must carry */
+    private static int find(Mapping m, int table, byte[] key, int h, byte[] tg) {
+        int mask = m.slots - 1;
+        for (int i = 0, idx = h & mask; i < m.slots; i++, idx = (idx + 1) & mask) {
+            int at = slot(m, table, idx);
+            byte state = m.buf.get(at);
+            if (state == EMPTY) return -1;
+            if (state == USED && m.buf.getInt(at + S_HASH) == h && nameEquals(m, at, table, key)
+                    && (tg == null || nameEquals(m, at, TG, tg))) return at;
+        }
+        return -1;
+    }
+
+    private static boolean nameEquals(Mapping m, int at, int which, byte[] name) {
+        int length = m.buf.get(at + (which == TG ? S_TG_LENGTH : S_MC_LENGTH));
+        if (length != name.length) return false;
+        int from = at + (which == TG ? S_TG : S_MC);
+        for (int i = 0; i < length; i++) {
+            if (m.buf.get(from + i) != name[i]) return false;
+        }
+        return true;
+    }
+
+    private static byte[] name(Mapping m, int at, int which) {
+        int max = which == TG ? TG_BYTES : MC_BYTES;
+        // Clamped: a torn read can see any length, and is thrown away by the version check
+        int length = Math.min(Math.max(m.buf.get(at + (which == TG ? S_TG_LENGTH : S_MC_LENGTH)), 0), max);
+        byte[] b = new byte[length];
+        m.buf.get(at + (which == TG ? S_TG : S_MC), b);
+        return b;
+    }
+
+    private static int slot(Mapping m, int table, int idx) {
+        return HEADER_BYTES + (table * m.slots + idx) * SLOT_BYTES;
+    }
+
+    private Mapping current() {
+        Mapping m = map;
+        if ((int) INTS.getAcquire(m.buf, H_MOVED) == 0) return m;
+        return reopen(m);
+    }
+
+    private synchronized Mapping reopen(Mapping stale) {
+        if (map != stale) return map;
+        try {
+            map = Mapping.open(file);
+            stale.close();
+        } catch (IOException e) {
+            // Keep answering from the old tables; they are only missing writes made since the move
+            LOGGER.warn("[TeleBridge] Could not reopen link index {}", file, e);
+        }
+        return map;
+    }
+
+    /* ===================== Writes ===================== */
+
+    private interface Mutation<T> {
+        T run() throws IOException;
+    }
+
+    private synchronized <T> T mutate(Mutation<T> body) {
+        long start = System.nanoTime();
+        try (FileChannel lc = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            lc.lock(); // released with the channel
+            Mapping m = current();
+            // Odd outside the lock: a writer died mid-update, so rebuild from the Telegram table
+            if (((long) LONGS.getVolatile(m.buf, H_VERSION) & 1) != 0) rebuild(m, m.slots);
+            return body.run();
+        } catch (IOException e) {
+            LOGGER.warn("[TeleBridge] Could not update link index {}", file, e);
+            return null;
+        } finally {
+            saveTime.recordSince(start);
+        }
+    }
+
+    /** Relinking a Telegram name moves it to the new player; the player's other names stay. */
+    private void linkLocked(byte[] tg, byte[] mc) throws IOException {
+        Mapping m = reserve(map);
+        int th = hash(tg);
+        int mh = hash(mc);
+        int at = find(m, TG, tg, th);
+        if (at >= 0 && nameEquals(m, at, MC, mc)) return;
+        long v = begin(m);
+        int live = m.buf.getInt(H_LIVE);
+        if (at >= 0) {
+            byte[] oldMc = name(m, at, MC);
+            remove(m, TG, at);
+            int other = find(m, MC, oldMc, hash(oldMc), tg);
+            if (other >= 0) remove(m, MC, other);
+            live--;
+        }
+        int seq = m.buf.getInt(H_SEQ) + 1;
+        insert(m, TG, th, tg, mc, seq);
+        insert(m, MC, mh, tg, mc, seq);
+        m.buf.putInt(H_SEQ, seq);
+        m.buf.putInt(H_LIVE, live + 1);
+        end(m, v);
+    }
+
+    /** Rebuilds into a larger or tombstone-free file first if one more link would pass three quarters full. */
+    private Mapping reserve(Mapping m) throws IOException {
+        int live = m.buf.getInt(H_LIVE);
+        int deleted = Math.max(m.buf.getInt(H_DELETED), m.buf.getInt(H_DELETED + 4));
+        if ((live + deleted + 1) * 4L <= m.slots * 3L) return m;
+        int slots = INITIAL_SLOTS;
+        while ((live + 1) * 2L > slots) slots <<= 1;
+        return rebuild(m, slots);
+    }
+
+    private Mapping rebuild(Mapping old, int slots) throws IOException {
+        install(build(slots, old.buf.getLong(H_ID), entries(old)));
+        Mapping fresh = Mapping.open(file);
+        map = fresh;
+        INTS.setRelease(old.buf, H_MOVED, 1);
+        old.close();
+        return fresh;
+    }
+
+    private static void insert(Mapping m, int table, int h, byte[] tg, byte[] mc, int seq) {
+        int mask = m.slots - 1;
+        int target = -1;
+        for (int i = 0, idx = h & mask; i < m.slots; i++, idx = (idx + 1) & mask) {
+            int at = slot(m, table, idx);
+            byte state = m.buf.get(at);
+            if (state == DELETED && target < 0) target = at;
+            if (state == EMPTY) {
+                if (target < 0) target = at;
+                break;
+            }
+        }
+        if (m.buf.get(target) == DELETED) m.buf.putInt(H_DELETED + table * 4, m.buf.getInt(H_DELETED + table * 4) - 1);
+        m.buf.put(target + S_TG_LENGTH, (byte) tg.length);
+        m.buf.put(target + S_MC_LENGTH, (byte) mc.length);
+        m.buf.putInt(target + S_HASH, h);
+        m.buf.put(target + S_TG, tg);
+        m.buf.put(target + S_MC, mc);
+        m.buf.putInt(target + S_SEQ, seq);
+        m.buf.put(target, USED);
+    }
+
+    private static void remove(Mapping m, int table, int at) {
+        m.buf.put(at, DELETED);
+        m.buf.putInt(H_DELETED + table * 4, m.buf.getInt(H_DELETED + table * 4) + 1);
+    }
+
+    private static long begin(Mapping m) {
+        long v = (long) LONGS.get(m.buf, H_VERSION);
+        LONGS.setOpaque(m.buf, H_VERSION, v + 1);
+        VarHandle.storeStoreFence();
+        return v;
+    }
+
+    private static void end(Mapping m, long v) {
+        LONGS.setRelease(m.buf, H_VERSION, v + 2);
+    }
+
+    /** Tables holding {@code links} ({tg, mc} pairs), as file bytes. */
+    private static byte[] build(int slots, long id, String[][] links) {
+        byte[] bytes = new byte[HEADER_BYTES + 2 * slots * SLOT_BYTES];
+        var m = new Mapping(null, ByteBuffer.wrap(bytes), slots);
+        m.buf.putInt(H_MAGIC, MAGIC).putInt(H_SLOTS, slots);
+        m.buf.putLong(H_ID, id);
+        int live = 0;
+        for (String[] link : links) {
+            byte[] tg = utf8(link[0]);
+            byte[] mc = utf8(link[1]);
+            if (find(m, TG, tg, hash(tg)) >= 0) continue;
+            live++;
+            insert(m, TG, hash(tg), tg, mc, live);
+            insert(m, MC, hash(mc), tg, mc, live);
+        }
+        m.buf.putInt(H_LIVE, live);
+        m.buf.putInt(H_SEQ, live);
+        return bytes;
+    }
+
+    private void install(byte[] bytes) throws IOException {
+        Files.write(tmp, bytes);
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            ch.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static boolean isIndex(Path file) throws IOException {
+        if (!Files.exists(file) || Files.size(file) < HEADER_BYTES) return false;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            var header = ByteBuffer.allocate(8);
+            ch.read(header, 0);
+            int slots = header.getInt(H_SLOTS);
+            return header.getInt(H_MAGIC) == MAGIC && Integer.bitCount(slots) == 1
+                    && ch.size() == HEADER_BYTES + 2L * slots * SLOT_BYTES;
+        }
+    }
+
+    /** @return {tg, mc} as stored, or null when either is blank or too long for a slot */
+    private static byte[][] encode(String tgUsername, String mcName) {
+        if (tgUsername == null || tgUsername.isBlank() || mcName == null || mcName.isBlank()) return null;
+        byte[] tg = utf8(normalize(tgUsername));
+        byte[] mc = utf8(mcName);
+        if (tg.length > TG_BYTES || mc.length > MC_BYTES) {
+            LOGGER.warn("[TeleBridge] Not linking {} to {}: names are limited to {} and {} bytes", tgUsername, mcName, TG_BYTES, MC_BYTES);
+            return null;
+        }
+        return new byte[][]{tg, mc};
+    }
+
+    private static String normalize(String raw) {
+        String norm = raw.startsWith("@") ? raw.substring(1) : raw;
+        return norm.toLowerCase(Locale.ROOT).trim();
+    }
+
+    /** Identifies one index across rebuilds; a deleted and recreated index gets a new one. */
+    private static long newId() {
+        long id;
+        do {
+            id = ThreadLocalRandom.current().nextLong();
+        } while (id == 0);
+        return id;
+    }
+
+    private static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** FNV-1a over the UTF-8 bytes: the same in every JVM, unlike String.hashCode's contract. */
+    private static int hash(byte[] key) {
+        int h = 0x811c9dc5;
+        for (byte b : key) h = (h ^ (b & 0xff)) * 0x01000193;
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Mapping {
+        final FileChannel ch;
+        final ByteBuffer buf;
+        final int slots;
+
+        Mapping(FileChannel ch, ByteBuffer buf, int slots) {
+            this.ch = ch;
+            this.buf = buf;
+            this.slots = slots;
+        }
+
+        static Mapping open(Path file) throws IOException {
+            FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, ch.size());
+            return new Mapping(ch, buf, buf.getInt(H_SLOTS));
+        }
+
+        void force() {
+            if (buf instanceof MappedByteBuffer mapped) mapped.force();
+        }
+
+        void close() {
+            try {
+                if (ch != null) ch.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
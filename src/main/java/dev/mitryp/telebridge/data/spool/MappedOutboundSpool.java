@@ -0,0 +1,239 @@
+package dev.mitryp.telebridge.data.spool;
+
+import com.mojang.logging.LogUtils;
+import dev.mitryp.telebridge.domain.interfaces.OutboundSpool;
+import dev.mitryp.telebridge.domain.models.OutboundMessage;
+import dev.mitryp.telebridge.domain.models.OutboundPriority;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only outbound log made of fixed-size memory-mapped segments.
+ * <p>
+ * Record layout: {@code int length | int crc32 | long seq | payload}, the payload ending in the priority's
+ * {@link OutboundPriority#code}.
+ * The length is written last, so a record torn by a crash reads as the end of the segment. The acknowledged low-water mark (every seq below it was accepted by
+ * Telegram) lives in a separate 8-byte mapped file. Writes never fsync; the page cache survives a JVM crash and the
+ * buffers are forced on roll-over and close.
+ */
+public final class MappedOutboundSpool implements OutboundSpool {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    private static final int SEGMENT_BYTES = 4 << 20;
+    private static final int MAX_SEGMENTS = 16;
+    private static final int HEADER_BYTES = 16;
+    private static final int NO_VALUE = Integer.MIN_VALUE;
+    // Far more than the scheduler can hold unsent; past this a seq was almost certainly never acknowledged
+    private static final int STUCK_ACKS = 50_000;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path dir;
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private final TreeSet<Long> ackedAhead = new TreeSet<>();
+    private final CRC32 crc = new CRC32();
+    private List<OutboundMessage> recovered = new ArrayList<>();
+    private FileChannel ackChannel;
+    private MappedByteBuffer ackBuf;
+    private MappedByteBuffer active;
+    private long acked = 1;
+    private long nextSeq = 1;
+    private boolean open;
+    private boolean warnedStuck;
+
+    public MappedOutboundSpool(Path dir) {
+        this.dir = dir;
+        try {
+            Files.createDirectories(dir);
+            ackChannel = FileChannel.open(dir.resolve("acked"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            ackBuf = ackChannel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES);
+            acked = Math.max(1, ackBuf.getLong(0));
+            nextSeq = acked;
+            recover();
+            open = true;
+        } catch (IOException e) {
+            LOGGER.warn("[TeleBridge] Outbound spool unavailable, messages will not survive a restart", e);
+        }
+    }
+
+    @Override
+    public synchronized long append(OutboundMessage m) {
+        if (!open) return 0;
+        byte[] chat = m.chatId.getBytes(StandardCharsets.UTF_8);
+        byte[] text = m.text.getBytes(StandardCharsets.UTF_8);
+        int length = HEADER_BYTES + 4 + chat.length + 4 + text.length + 4 + 4 + 1;
+        if (length > SEGMENT_BYTES) return 0;
+
+        try {
+            if (active == null || active.remaining() < length) roll();
+        } catch (IOException e) {
+            LOGGER.warn("[TeleBridge] Could not roll outbound spool segment", e);
+            return 0;
+        }
+
+        long seq = nextSeq++;
+        int start = active.position();
+        active.position(start + HEADER_BYTES);
+        int payloadStart = active.position();
+        active.putInt(chat.length).put(chat)
+                .putInt(text.length).put(text)
+                .putInt(m.replyMessageId == null ? NO_VALUE : m.replyMessageId)
+                .putInt(m.threadId == null ? NO_VALUE : m.threadId)
+                .put(m.priority.code);
+        crc.reset();
+        crc.update(active.duplicate().position(payloadStart).limit(active.position()));
+        active.putLong(start + 8, seq);
+        active.putInt(start + 4, (int) crc.getValue());
+        active.putInt(start, length);
+
+        segments.peekLast().lastSeq = seq;
+        return seq;
+    }
+
+    @Override
+    public synchronized void ack(long seq) {
+        if (!open || seq < acked) return;
+        ackedAhead.add(seq);
+        // Lanes finish out of order; the persisted mark only moves over a contiguous run
+        while (!ackedAhead.isEmpty() && ackedAhead.first() == acked) {
+            ackedAhead.pollFirst();
+            acked++;
+            warnedStuck = false;
+        }
+        if (ackedAhead.size() > STUCK_ACKS && !warnedStuck) {
+            warnedStuck = true;
+            LOGGER.warn("[TeleBridge] Outbound spool mark is stuck at #{} with {} later messages acknowledged; " +
+                    "they will be resent after a restart", acked, ackedAhead.size());
+        }
+        ackBuf.putLong(0, acked);
+        deleteAckedSegments();
+    }
+
+    @Override
+    public synchronized List<OutboundMessage> drainRecovered() {
+        List<OutboundMessage> out = recovered;
+        recovered = List.of();
+        return out;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!open) return;
+        open = false;
+        if (active != null) active.force();
+        ackBuf.force();
+        try {
+            ackChannel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void roll() throws IOException {
+        if (active != null) active.force();
+        if (segments.size() >= MAX_SEGMENTS) dropOldestSegment();
+
+        Path path = dir.resolve(SEGMENT_PREFIX + String.format("%020d", nextSeq) + SEGMENT_SUFFIX);
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            active = ch.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_BYTES);
+        }
+        segments.addLast(new Segment(path));
+    }
+
+    /** Size cap: losing the oldest unsent lines beats filling the disk while Telegram is unreachable. */
+    private void dropOldestSegment() {
+        Segment oldest = segments.pollFirst();
+        if (oldest.lastSeq >= acked) {
+            LOGGER.warn("[TeleBridge] Outbound spool full, discarding {} unsent messages", oldest.lastSeq - acked + 1);
+            acked = oldest.lastSeq + 1;
+            ackedAhead.headSet(acked).clear();
+            warnedStuck = false;
+            ackBuf.putLong(0, acked);
+        }
+        delete(oldest.path);
+    }
+
+    private void deleteAckedSegments() {
+        // The last segment is the one being written to
+        while (segments.size() > 1 && segments.peekFirst().lastSeq < acked) {
+            delete(segments.pollFirst().path);
+        }
+    }
+
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> s = Files.list(dir)) {
+            files = s.filter(p -> p.getFileName().toString().startsWith(SEGMENT_PREFIX)).sorted().toList();
+        }
+        for (Path path : files) {
+            Segment seg = new Segment(path);
+            ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(path));
+            while (buf.remaining() >= HEADER_BYTES) {
+                int start = buf.position();
+                int length = buf.getInt(start);
+                if (length < HEADER_BYTES || length > buf.remaining()) break;
+                int storedCrc = buf.getInt(start + 4);
+                long seq = buf.getLong(start + 8);
+                crc.reset();
+                crc.update(buf.duplicate().position(start + HEADER_BYTES).limit(start + length));
+                if ((int) crc.getValue() != storedCrc) break;
+
+                buf.position(start + HEADER_BYTES);
+                String chat = readString(buf);
+                String text = readString(buf);
+                int reply = buf.getInt();
+                int thread = buf.getInt();
+                // Records written before priorities existed end here
+                OutboundPriority priority = buf.position() < start + length ? OutboundPriority.ofCode(buf.get()) : null;
+                if (priority == null) priority = OutboundPriority.CHAT;
+                buf.position(start + length);
+
+                seg.lastSeq = seq;
+                nextSeq = Math.max(nextSeq, seq + 1);
+                if (seq >= acked) {
+                    recovered.add(new OutboundMessage(chat, text,
+                            reply == NO_VALUE ? null : reply, thread == NO_VALUE ? null : thread, priority, seq));
+                }
+            }
+            if (seg.lastSeq < acked) delete(path);
+            else segments.addLast(seg);
+        }
+        // New writes always start a fresh segment, the tail of the last one may be torn
+    }
+
+    private static String readString(ByteBuffer buf) {
+        byte[] b = new byte[buf.getInt()];
+        buf.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // Still mapped on some platforms; it is fully acknowledged and will be removed on the next start
+        }
+    }
+
+    private static final class Segment {
+        final Path path;
+        long lastSeq;
+
+        Segment(Path path) {
+            this.path = path;
+        }
+    }
+}
@@ -12,4 +12,8 @@ public interface LinkRepository {
     default boolean isLinked(String tgUsername) {
         return resolveMcFromTg(tgUsername) != null;
     }
+
+    /** Persist every change made so far; called on shutdown. */
+    default void flush() {
+    }
 }
@@ -0,0 +1,22 @@
+package dev.mitryp.telebridge.domain.interfaces;
+
+import dev.mitryp.telebridge.domain.models.OutboundMessage;
+
+import java.util.List;
+
+/** Durable log of outbound messages that Telegram has not accepted yet. */
+public interface OutboundSpool {
+    /** @return the sequence number to {@link #ack} once Telegram accepts the message, 0 if it was not stored. */
+    long append(OutboundMessage m);
+
+    /**
+     * Called exactly once for every stored message, whether it was delivered or given up on. The persisted mark
+     * stops at the first seq that is never acknowledged, and everything past it is resent on every start.
+     */
+    void ack(long seq);
+
+    /** Messages left unacknowledged by the previous run, in the order they were appended. Returned once. */
+    List<OutboundMessage> drainRecovered();
+
+    void close();
+}
@@ -4,4 +4,14 @@ import dev.mitryp.telebridge.domain.models.TelegramInboundMessage;
 
 public interface TelegramCommand {
     void handle(String args, TelegramInboundMessage in);
+
+    /** Commands that touch game state return true and run on the server thread; the rest run on a worker. */
+    default boolean needsServerThread() {
+        return false;
+    }
+
+    /** Commands whose effects must keep Telegram's message order run one at a time, in the order they arrived. */
+    default boolean ordered() {
+        return false;
+    }
 }
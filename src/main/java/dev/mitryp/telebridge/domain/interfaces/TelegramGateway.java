@@ -1,14 +1,75 @@
 package dev.mitryp.telebridge.domain.interfaces;
 
+import dev.mitryp.telebridge.domain.models.PlayerActivity;
+import dev.mitryp.telebridge.domain.models.ServiceEvent;
 import dev.mitryp.telebridge.domain.models.TelegramInboundMessage;
 
 import java.util.function.Consumer;
 
 public interface TelegramGateway {
-    void sendService(String plainText);
+    /** What {@link #pollOnce(int, int, Consumer)} returns while inbound is turned off; nothing was asked. */
+    int INBOUND_OFF = -1;
+
+    /** Send a server-side line to every destination routed for {@code kind}. */
+    void sendService(ServiceEvent kind, String plainText);
+
+    /**
+     * A player joined, left or died. Gateways that fold these into a digest use {@code player}; the default sends
+     * {@code line} like any other service line.
+     */
+    default void sendActivity(PlayerActivity kind, String player, String line) {
+        sendService(kind.serviceEvent(), line);
+    }
 
     void sendReply(String plainText, Integer replyMessageId, Integer threadId);
 
+    /** Open the connection to the Bot API and resend anything left over from the previous run. */
+    default void start() {
+    }
+
+    /** Push out any service lines still waiting to be coalesced. */
+    default void flush() {
+    }
+
+    /**
+     * Flush, then keep sending until nothing is queued or {@code timeoutMillis} has passed; called once, on server
+     * stop. Whatever is left is reported, not sent.
+     */
+    default void shutdown(long timeoutMillis) {
+        flush();
+    }
+
+    /** The bot's own username, without '@'; null until Telegram has told us. */
+    default String botUsername() {
+        return null;
+    }
+
+    /** Ask Telegram to push updates to {@code url}, echoing {@code secret} in every request. */
+    void registerWebhook(String url, String secret);
+
+    /** Switch Telegram back to getUpdates delivery. */
+    void deleteWebhook();
+
+    /** The offset the next getUpdates will send, so another poller can carry on from it; -1 if unknown. */
+    default long updateOffset() {
+        return -1;
+    }
+
+    /** Carry on getUpdates from {@code offset} if it is ahead of where this gateway would resume. */
+    default void seekUpdates(long offset) {
+    }
+
     /** Long-poll Telegram and deliver each update's text (if any) to the consumer. */
-    void pollOnce(Consumer<TelegramInboundMessage> consumer) throws Exception;
+    default void pollOnce(Consumer<TelegramInboundMessage> consumer) throws Exception {
+        pollOnce(0, -1, consumer);
+    }
+
+    /**
+     * Like {@link #pollOnce(Consumer)}, for at most {@code limit} updates (0 for Telegram's default) and waiting up
+     * to {@code timeoutSeconds} for the first (-1 for the configured poll time).
+     *
+     * @return the number of updates received, or {@link #INBOUND_OFF}
+     * @throws Exception also when Telegram answers with an error status
+     */
+    int pollOnce(int limit, int timeoutSeconds, Consumer<TelegramInboundMessage> consumer) throws Exception;
 }
@@ -0,0 +1,23 @@
+package dev.mitryp.telebridge.domain.interfaces;
+
+/** Remembers which Telegram updates were already handled, across restarts. */
+public interface UpdateOffsetStore {
+    /** @return the highest update_id handled so far, or -1 when nothing was ever stored */
+    long lastUpdateId();
+
+    /** An id below everything remembered means Telegram renumbered; the store resets itself and answers false. */
+    boolean isSeen(long updateId);
+
+    void markProcessed(long updateId);
+
+    /**
+     * True once nothing was marked for long enough that Telegram may have renumbered: after a week without updates
+     * it picks the next update_id at random, possibly below the stored one.
+     */
+    boolean isStale();
+
+    /** Forget every mark. */
+    void reset();
+
+    void close();
+}
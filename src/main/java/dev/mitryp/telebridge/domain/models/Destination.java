@@ -0,0 +1,44 @@
+package dev.mitryp.telebridge.domain.models;
+
+import java.util.Objects;
+
+/** A chat, optionally narrowed to one forum topic. Written as {@code <chat_id>} or {@code <chat_id>/<thread_id>}. */
+@SuppressWarnings("ClassCanBeRecord")
+public final class Destination {
+    public final String chatId;
+    public final Integer threadId;
+
+    public Destination(String chatId, Integer threadId) {
+        this.chatId = chatId;
+        this.threadId = threadId;
+    }
+
+    /** @return null when {@code s} is not a valid destination */
+    public static Destination parse(String s) {
+        String t = s.trim();
+        int slash = t.indexOf('/');
+        String chat = (slash < 0 ? t : t.substring(0, slash)).trim();
+        if (chat.isEmpty()) return null;
+        if (slash < 0) return new Destination(chat, null);
+        try {
+            return new Destination(chat, Integer.parseInt(t.substring(slash + 1).trim()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Destination d && chatId.equals(d.chatId) && Objects.equals(threadId, d.threadId);
+    }
+
+    @Override
+    public int hashCode() {
+        return chatId.hashCode() * 31 + Objects.hashCode(threadId);
+    }
+
+    @Override
+    public String toString() {
+        return threadId == null ? chatId : chatId + "/" + threadId;
+    }
+}
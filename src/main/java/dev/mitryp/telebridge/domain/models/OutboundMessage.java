@@ -0,0 +1,58 @@
+package dev.mitryp.telebridge.domain.models;
+
+import java.util.Objects;
+
+/**
+ * A sendMessage call waiting to go out, or an editMessageText call when {@link #editMessageId} is set. {@link #text}
+ * is plain; escaping for the parse mode happens when the request body is built, so every line keeps its "> " quote
+ * prefix and length limits count visible characters.
+ */
+@SuppressWarnings("ClassCanBeRecord")
+public final class OutboundMessage {
+    public final String chatId;
+    public final String text;
+    public final Integer replyMessageId;
+    public final Integer threadId;
+    public final OutboundPriority priority;
+    /** Message whose text this one replaces; {@link #threadId} still picks the lane, so the edit follows the send. */
+    public final Integer editMessageId;
+    /** Position in the outbound spool, 0 when the message was never spooled. */
+    public final long seq;
+
+    public OutboundMessage(String chatId, String text, Integer replyMessageId, Integer threadId,
+                           OutboundPriority priority) {
+        this(chatId, text, replyMessageId, threadId, priority, null, 0);
+    }
+
+    public OutboundMessage(String chatId, String text, Integer replyMessageId, Integer threadId,
+                           OutboundPriority priority, long seq) {
+        this(chatId, text, replyMessageId, threadId, priority, null, seq);
+    }
+
+    private OutboundMessage(String chatId, String text, Integer replyMessageId, Integer threadId,
+                            OutboundPriority priority, Integer editMessageId, long seq) {
+        this.chatId = chatId;
+        this.text = text;
+        this.replyMessageId = replyMessageId;
+        this.threadId = threadId;
+        this.priority = priority;
+        this.editMessageId = editMessageId;
+        this.seq = seq;
+    }
+
+    public static OutboundMessage edit(String chatId, Integer threadId, int messageId, String text,
+                                       OutboundPriority priority) {
+        return new OutboundMessage(chatId, text, null, threadId, priority, messageId, 0);
+    }
+
+    public OutboundMessage withSeq(long seq) {
+        return new OutboundMessage(chatId, text, replyMessageId, threadId, priority, editMessageId, seq);
+    }
+
+    /** Plain service lines of one class to the same place can be joined into one message; replies and digests cannot. */
+    public boolean canMergeWith(OutboundMessage next) {
+        return replyMessageId == null && next.replyMessageId == null && priority == next.priority
+                && priority != OutboundPriority.DIGEST
+                && chatId.equals(next.chatId) && Objects.equals(threadId, next.threadId);
+    }
+}
@@ -0,0 +1,41 @@
+package dev.mitryp.telebridge.domain.models;
+
+/** Outbound classes, most important first; a destination always sends from the highest non-empty class. */
+public enum OutboundPriority {
+    LIFECYCLE("lifecycle", 0),
+    DEATH("death", 1),
+    /** Activity digest messages and their edits; never merged with anything. */
+    DIGEST("digest", 5),
+    JOIN_QUIT("join_quit", 2),
+    CHAT("chat", 3),
+    REPLY("reply", 4);
+
+    private static final OutboundPriority[] BY_CODE = new OutboundPriority[6];
+
+    static {
+        for (OutboundPriority p : values()) BY_CODE[p.code] = p;
+    }
+
+    public final String key;
+    /** What the spool stores; fixed per class, unlike the ordinal, which follows the order above. */
+    public final byte code;
+
+    OutboundPriority(String key, int code) {
+        this.key = key;
+        this.code = (byte) code;
+    }
+
+    /** @return the class stored as {@code code}, or null for a code no class has */
+    public static OutboundPriority ofCode(byte code) {
+        return code >= 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+
+    public static OutboundPriority of(ServiceEvent kind) {
+        return switch (kind) {
+            case START_STOP -> LIFECYCLE;
+            case DEATH -> DEATH;
+            case JOIN_QUIT -> JOIN_QUIT;
+            case CHAT -> CHAT;
+        };
+    }
+}
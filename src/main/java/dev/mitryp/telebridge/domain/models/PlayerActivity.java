@@ -0,0 +1,12 @@
+package dev.mitryp.telebridge.domain.models;
+
+/** Player events the activity digest can fold into one message. */
+public enum PlayerActivity {
+    JOIN,
+    QUIT,
+    DEATH;
+
+    public ServiceEvent serviceEvent() {
+        return this == DEATH ? ServiceEvent.DEATH : ServiceEvent.JOIN_QUIT;
+    }
+}
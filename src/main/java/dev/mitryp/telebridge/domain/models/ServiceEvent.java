@@ -0,0 +1,22 @@
+package dev.mitryp.telebridge.domain.models;
+
+/** Kinds of server-side messages, as named in {@code telegram.routes}. */
+public enum ServiceEvent {
+    CHAT("chat"),
+    JOIN_QUIT("join_quit"),
+    DEATH("death"),
+    START_STOP("start_stop");
+
+    public final String key;
+
+    ServiceEvent(String key) {
+        this.key = key;
+    }
+
+    public static ServiceEvent byKey(String key) {
+        for (ServiceEvent e : values()) {
+            if (e.key.equals(key)) return e;
+        }
+        return null;
+    }
+}
@@ -1,21 +1,64 @@
 package dev.mitryp.telebridge.domain.models;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
 public final class TelebridgeConfig {
     public final boolean telegramEnabled;
     public final String telegramBotToken;
     public final String telegramChatId;
+    /** {@link #telegramChatId} parsed once per snapshot, {@link Long#MIN_VALUE} when it is not a number. */
+    public final long telegramChatIdNumeric;
     public final boolean telegramUseMarkdownV2;
+    public final String telegramApiBaseUrl;
+    /** Parsed {@code telegram.routes}; event types without an entry go to {@link #telegramChatId}. */
+    public final Map<ServiceEvent, List<Destination>> telegramRoutes;
+    private final List<Destination> defaultDestination;
     public final boolean serviceChat, serviceJoinQuit, serviceDeaths, serviceStartStop;
     public final boolean inboundEnabled;
     public final int inboundPollSeconds;
     public final String inboundCmdPrefix;
+    public final int outboundBatchWindowMs;
+    public final boolean webhookEnabled;
+    public final String webhookPublicUrl;
+    public final String webhookBindAddress;
+    public final int webhookPort;
+    public final String webhookPath;
+    public final String webhookSecret;
+    public final boolean metricsPrometheusEnabled;
+    public final String metricsPrometheusBindAddress;
+    public final int metricsPrometheusPort;
+    public final int inboundBroadcastsPerTick;
+    public final int inboundSayBurst;
+    public final int inboundSayPerMinute;
+    public final boolean outboundDigestEnabled;
+    public final int outboundDigestWindowSeconds;
+    public final boolean inboundClusterEnabled;
+    public final String inboundClusterDir;
+    public final String inboundClusterInstance;
+    public final String linksSharedFile;
+    public final int outboundShutdownDrainMs;
 
     private TelebridgeConfig(boolean telegramEnabled, String bot, String chat, boolean mdv2,
                              boolean serviceChat, boolean serviceJoinQuit, boolean serviceDeaths, boolean serviceStartStop,
-                             boolean inboundEnabled, int inboundPollSeconds, String inboundCmdPrefix) {
+                             boolean inboundEnabled, int inboundPollSeconds, String inboundCmdPrefix,
+                             int outboundBatchWindowMs,
+                             boolean webhookEnabled, String webhookPublicUrl, String webhookBindAddress, int webhookPort,
+                             String webhookPath, String webhookSecret, String telegramApiBaseUrl,
+                             boolean metricsPrometheusEnabled, String metricsPrometheusBindAddress, int metricsPrometheusPort,
+                             Map<ServiceEvent, List<Destination>> telegramRoutes,
+                             int inboundBroadcastsPerTick, int inboundSayBurst, int inboundSayPerMinute,
+                             boolean outboundDigestEnabled, int outboundDigestWindowSeconds,
+                             boolean inboundClusterEnabled, String inboundClusterDir, String inboundClusterInstance,
+                             String linksSharedFile, int outboundShutdownDrainMs) {
         this.telegramEnabled = telegramEnabled;
         this.telegramBotToken = bot;
         this.telegramChatId = chat;
+        this.telegramChatIdNumeric = parseChatId(chat);
         this.telegramUseMarkdownV2 = mdv2;
         this.serviceChat = serviceChat;
         this.serviceJoinQuit = serviceJoinQuit;
@@ -24,6 +67,29 @@ public final class TelebridgeConfig {
         this.inboundEnabled = inboundEnabled;
         this.inboundPollSeconds = inboundPollSeconds;
         this.inboundCmdPrefix = inboundCmdPrefix;
+        this.outboundBatchWindowMs = outboundBatchWindowMs;
+        this.webhookEnabled = webhookEnabled;
+        this.webhookPublicUrl = webhookPublicUrl;
+        this.webhookBindAddress = webhookBindAddress;
+        this.webhookPort = webhookPort;
+        this.webhookPath = webhookPath;
+        this.webhookSecret = webhookSecret;
+        this.telegramApiBaseUrl = telegramApiBaseUrl;
+        this.metricsPrometheusEnabled = metricsPrometheusEnabled;
+        this.metricsPrometheusBindAddress = metricsPrometheusBindAddress;
+        this.metricsPrometheusPort = metricsPrometheusPort;
+        this.telegramRoutes = telegramRoutes;
+        this.defaultDestination = List.of(new Destination(chat, null));
+        this.inboundBroadcastsPerTick = inboundBroadcastsPerTick;
+        this.inboundSayBurst = inboundSayBurst;
+        this.inboundSayPerMinute = inboundSayPerMinute;
+        this.outboundDigestEnabled = outboundDigestEnabled;
+        this.outboundDigestWindowSeconds = outboundDigestWindowSeconds;
+        this.inboundClusterEnabled = inboundClusterEnabled;
+        this.inboundClusterDir = inboundClusterDir;
+        this.inboundClusterInstance = inboundClusterInstance;
+        this.linksSharedFile = linksSharedFile;
+        this.outboundShutdownDrainMs = outboundShutdownDrainMs;
     }
 
     static TelebridgeConfig fromSpec() {
@@ -39,7 +105,29 @@ public final class TelebridgeConfig {
                 TelebridgeSpec.SERVICE_START_STOP.get(),
                 TelebridgeSpec.INBOUND_ENABLED.get(),
                 TelebridgeSpec.INBOUND_POLL_SECONDS.get(),
-                TelebridgeSpec.INBOUND_CMD_PREFIX.get()
+                TelebridgeSpec.INBOUND_CMD_PREFIX.get(),
+                TelebridgeSpec.OUTBOUND_BATCH_WINDOW_MS.get(),
+                TelebridgeSpec.WEBHOOK_ENABLED.get(),
+                TelebridgeSpec.WEBHOOK_PUBLIC_URL.get(),
+                TelebridgeSpec.WEBHOOK_BIND_ADDRESS.get(),
+                TelebridgeSpec.WEBHOOK_PORT.get(),
+                TelebridgeSpec.WEBHOOK_PATH.get(),
+                TelebridgeSpec.WEBHOOK_SECRET.get(),
+                TelebridgeSpec.TELEGRAM_API_BASE_URL.get(),
+                TelebridgeSpec.METRICS_PROMETHEUS_ENABLED.get(),
+                TelebridgeSpec.METRICS_PROMETHEUS_BIND_ADDRESS.get(),
+                TelebridgeSpec.METRICS_PROMETHEUS_PORT.get(),
+                parseRoutes(TelebridgeSpec.TELEGRAM_ROUTES.get()),
+                TelebridgeSpec.INBOUND_BROADCASTS_PER_TICK.get(),
+                TelebridgeSpec.INBOUND_SAY_BURST.get(),
+                TelebridgeSpec.INBOUND_SAY_PER_MINUTE.get(),
+                TelebridgeSpec.OUTBOUND_DIGEST_ENABLED.get(),
+                TelebridgeSpec.OUTBOUND_DIGEST_WINDOW_SECONDS.get(),
+                TelebridgeSpec.INBOUND_CLUSTER_ENABLED.get(),
+                TelebridgeSpec.INBOUND_CLUSTER_DIR.get(),
+                TelebridgeSpec.INBOUND_CLUSTER_INSTANCE.get(),
+                TelebridgeSpec.LINKS_SHARED_FILE.get(),
+                TelebridgeSpec.OUTBOUND_SHUTDOWN_DRAIN_MS.get()
         );
     }
 
@@ -48,11 +136,92 @@ public final class TelebridgeConfig {
         return new TelebridgeConfig(
                 false, "PUT_YOUR_BOT_TOKEN_HERE", "PUT_YOUR_CHAT_ID_HERE", true,
                 true, true, true, true,
-                false, 20, "/"
+                false, 20, "/",
+                500,
+                false, "", "0.0.0.0", 8443, "/telebridge", "",
+                "https://api.telegram.org",
+                false, "127.0.0.1", 9464,
+                Map.of(),
+                20, 3, 10,
+                false, 60,
+                false, "", "",
+                "", 5000
         );
     }
 
+    /** Same settings with outbound enabled against another Bot API, bot and chat; used by the load harness. */
+    public TelebridgeConfig withBotApi(String apiBaseUrl, String bot, String chat, int batchWindowMs) {
+        return new TelebridgeConfig(true, bot, chat, telegramUseMarkdownV2,
+                serviceChat, serviceJoinQuit, serviceDeaths, serviceStartStop,
+                inboundEnabled, inboundPollSeconds, inboundCmdPrefix,
+                batchWindowMs,
+                webhookEnabled, webhookPublicUrl, webhookBindAddress, webhookPort, webhookPath, webhookSecret,
+                apiBaseUrl,
+                metricsPrometheusEnabled, metricsPrometheusBindAddress, metricsPrometheusPort,
+                telegramRoutes, inboundBroadcastsPerTick, inboundSayBurst, inboundSayPerMinute,
+                outboundDigestEnabled, outboundDigestWindowSeconds,
+                inboundClusterEnabled, inboundClusterDir, inboundClusterInstance,
+                linksSharedFile, outboundShutdownDrainMs);
+    }
+
+    /** Where lines of {@code kind} go; never empty. */
+    public List<Destination> destinationsFor(ServiceEvent kind) {
+        List<Destination> d = telegramRoutes.get(kind);
+        return d != null ? d : defaultDestination;
+    }
+
+    /** @return the event and destination of a {@code telegram.routes} entry, or null when it is malformed */
+    static Map.Entry<ServiceEvent, Destination> parseRoute(String route) {
+        int eq = route.indexOf('=');
+        if (eq < 0) return null;
+        ServiceEvent kind = ServiceEvent.byKey(route.substring(0, eq).trim());
+        Destination dest = Destination.parse(route.substring(eq + 1));
+        return kind == null || dest == null ? null : Map.entry(kind, dest);
+    }
+
+    private static Map<ServiceEvent, List<Destination>> parseRoutes(List<? extends String> routes) {
+        Map<ServiceEvent, List<Destination>> byKind = new EnumMap<>(ServiceEvent.class);
+        for (String route : routes) {
+            var e = parseRoute(route);
+            if (e == null) continue;
+            List<Destination> list = byKind.computeIfAbsent(e.getKey(), k -> new ArrayList<>());
+            if (!list.contains(e.getValue())) list.add(e.getValue());
+        }
+        byKind.replaceAll((k, v) -> List.copyOf(v));
+        return Collections.unmodifiableMap(byKind);
+    }
+
+    private static long parseChatId(String chat) {
+        try {
+            return Long.parseLong(chat.trim());
+        } catch (NumberFormatException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
     public boolean hasOutbound() {
         return telegramEnabled && !telegramBotToken.isBlank() && !telegramChatId.isBlank();
     }
+
+    public boolean hasWebhook() {
+        return inboundEnabled && webhookEnabled && !webhookPublicUrl.isBlank() && !webhookSecret.isBlank();
+    }
+
+    public boolean hasCluster() {
+        return inboundEnabled && inboundClusterEnabled && !inboundClusterDir.isBlank() && !inboundClusterInstance.isBlank();
+    }
+
+    /**
+     * Empty, or 1-32 letters, digits and underscores. Telegram bot usernames always end in "bot", so a name that
+     * does too could not be told apart from {@code /cmd@SomeBot}.
+     */
+    static boolean isInstanceName(String name) {
+        if (name.isEmpty()) return true;
+        if (name.length() > 32 || name.toLowerCase(Locale.ROOT).endsWith("bot")) return false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!(c == '_' || (c < 128 && Character.isLetterOrDigit(c)))) return false;
+        }
+        return true;
+    }
 }
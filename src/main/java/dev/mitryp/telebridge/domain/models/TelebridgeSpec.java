@@ -7,6 +7,8 @@ import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.fml.event.config.ModConfigEvent;
 
+import java.util.List;
+
 @Mod.EventBusSubscriber(modid = TelebridgeMod.MODID, bus = Mod.EventBusSubscriber.Bus.MOD)
 public final class TelebridgeSpec {
     private static final ForgeConfigSpec.Builder B = new ForgeConfigSpec.Builder();
@@ -16,6 +18,8 @@ public final class TelebridgeSpec {
     static final ForgeConfigSpec.ConfigValue<String> TELEGRAM_BOT_TOKEN = B.comment("Bot token").define("telegram.bot_token", "PUT_YOUR_BOT_TOKEN_HERE");
     static final ForgeConfigSpec.ConfigValue<String> TELEGRAM_CHAT_ID = B.comment("Target chat id").define("telegram.chat_id", "PUT_YOUR_CHAT_ID_HERE");
     static final ForgeConfigSpec.BooleanValue TELEGRAM_USE_MD_V2 = B.comment("Use MarkdownV2").define("telegram.use_markdown_v2", true);
+    static final ForgeConfigSpec.ConfigValue<String> TELEGRAM_API_BASE_URL = B.comment("Bot API base URL; change only for a self-hosted Bot API server or a local test double").define("telegram.api_base_url", "https://api.telegram.org");
+    static final ForgeConfigSpec.ConfigValue<List<? extends String>> TELEGRAM_ROUTES = B.comment("Destinations per event as \"<event>=<chat_id>[/<thread_id>]\", event one of chat, join_quit, death, start_stop; repeat an event to fan it out, events without an entry go to chat_id").defineList("telegram.routes", List.of(), o -> o instanceof String s && TelebridgeConfig.parseRoute(s) != null);
 
     // Service toggles
     static final ForgeConfigSpec.BooleanValue SERVICE_CHAT = B.comment("Forward chat").define("service.chat", true);
@@ -27,6 +31,36 @@ public final class TelebridgeSpec {
     static final ForgeConfigSpec.BooleanValue INBOUND_ENABLED = B.comment("Enable inbound commands from Telegram").define("telegram.inbound.enabled", false);
     static final ForgeConfigSpec.IntValue INBOUND_POLL_SECONDS = B.comment("Long-poll timeout (1..50)").defineInRange("telegram.inbound.poll_seconds", 20, 1, 50);
     static final ForgeConfigSpec.ConfigValue<String> INBOUND_CMD_PREFIX = B.comment("Command prefix").define("telegram.inbound.prefix", "/");
+    static final ForgeConfigSpec.IntValue INBOUND_BROADCASTS_PER_TICK = B.comment("Most Telegram messages shown in game per server tick; the rest wait for the next tick").defineInRange("telegram.inbound.broadcasts_per_tick", 20, 1, 1000);
+    static final ForgeConfigSpec.IntValue INBOUND_SAY_BURST = B.comment("/say messages one Telegram user may send back to back").defineInRange("telegram.inbound.say_burst", 3, 1, 100);
+    static final ForgeConfigSpec.IntValue INBOUND_SAY_PER_MINUTE = B.comment("Sustained /say rate per Telegram user once the burst is used up").defineInRange("telegram.inbound.say_per_minute", 10, 1, 600);
+
+    // Outbound
+    static final ForgeConfigSpec.IntValue OUTBOUND_BATCH_WINDOW_MS = B.comment("Window for coalescing service lines into one message, ms (0 = send each line)").defineInRange("telegram.outbound.batch_window_ms", 500, 0, 5000);
+    static final ForgeConfigSpec.BooleanValue OUTBOUND_DIGEST_ENABLED = B.comment("Fold join/quit/death lines into one activity message per window, edited in place as events arrive").define("telegram.outbound.digest.enabled", false);
+    static final ForgeConfigSpec.IntValue OUTBOUND_DIGEST_WINDOW_SECONDS = B.comment("How long one activity message keeps being edited before a new one is started, seconds").defineInRange("telegram.outbound.digest.window_seconds", 60, 10, 3600);
+    static final ForgeConfigSpec.IntValue OUTBOUND_SHUTDOWN_DRAIN_MS = B.comment("Longest the server waits on stop for queued messages to reach Telegram, ms; what is left stays in the spool for the next start").defineInRange("telegram.outbound.shutdown_drain_ms", 5000, 0, 30000);
+
+    // Webhook
+    static final ForgeConfigSpec.BooleanValue WEBHOOK_ENABLED = B.comment("Receive updates through a webhook instead of long polling").define("telegram.inbound.webhook.enabled", false);
+    static final ForgeConfigSpec.ConfigValue<String> WEBHOOK_PUBLIC_URL = B.comment("HTTPS URL Telegram posts updates to; must reach bind_address:port/path").define("telegram.inbound.webhook.public_url", "");
+    static final ForgeConfigSpec.ConfigValue<String> WEBHOOK_BIND_ADDRESS = B.comment("Local address of the webhook listener").define("telegram.inbound.webhook.bind_address", "0.0.0.0");
+    static final ForgeConfigSpec.IntValue WEBHOOK_PORT = B.comment("Local port of the webhook listener").defineInRange("telegram.inbound.webhook.port", 8443, 1, 65535);
+    static final ForgeConfigSpec.ConfigValue<String> WEBHOOK_PATH = B.comment("Path the webhook listener accepts updates on").define("telegram.inbound.webhook.path", "/telebridge");
+    static final ForgeConfigSpec.ConfigValue<String> WEBHOOK_SECRET = B.comment("Secret token Telegram must echo in X-Telegram-Bot-Api-Secret-Token (1-256 chars of A-Z, a-z, 0-9, _ and -)").define("telegram.inbound.webhook.secret", "");
+
+    // Cluster (several servers sharing one bot token; only the leader long-polls)
+    static final ForgeConfigSpec.BooleanValue INBOUND_CLUSTER_ENABLED = B.comment("Share getUpdates with other servers on this bot token: one leader polls and hands updates to the rest").define("telegram.inbound.cluster.enabled", false);
+    static final ForgeConfigSpec.ConfigValue<String> INBOUND_CLUSTER_DIR = B.comment("Directory every server in the cluster can reach, e.g. an absolute path on the shared host; holds the leader lock and the update queue").define("telegram.inbound.cluster.dir", "");
+    static final ForgeConfigSpec.ConfigValue<String> INBOUND_CLUSTER_INSTANCE = B.comment("This server's command namespace, e.g. survival for /say@survival (letters, digits and _, not ending in \"bot\")").define("telegram.inbound.cluster.instance", "", o -> o instanceof String s && TelebridgeConfig.isInstanceName(s));
+
+    // Links
+    static final ForgeConfigSpec.ConfigValue<String> LINKS_SHARED_FILE = B.comment("Link index shared with other servers, e.g. an absolute path on the shared host; empty keeps links in config/telebridge-links.json. Created from that file the first time").define("links.shared_file", "");
+
+    // Metrics
+    static final ForgeConfigSpec.BooleanValue METRICS_PROMETHEUS_ENABLED = B.comment("Serve metrics in Prometheus text format on bind_address:port/metrics").define("metrics.prometheus.enabled", false);
+    static final ForgeConfigSpec.ConfigValue<String> METRICS_PROMETHEUS_BIND_ADDRESS = B.comment("Address of the metrics endpoint; keep it local unless a firewall protects it").define("metrics.prometheus.bind_address", "127.0.0.1");
+    static final ForgeConfigSpec.IntValue METRICS_PROMETHEUS_PORT = B.comment("Port of the metrics endpoint").defineInRange("metrics.prometheus.port", 9464, 1, 65535);
 
     public static final ForgeConfigSpec SPEC = B.build();
 
@@ -7,12 +7,20 @@ public final class TelegramInboundMessage {
     public final String displayName;
     public final Integer replyMessageId;
     public final Integer threadId;
+    /** Telegram user id of the sender, 0 when the message has none (e.g. posted on behalf of a chat). */
+    public final long userId;
 
     public TelegramInboundMessage(String text, String tgUsernameOrNull, String displayName, Integer replyMessageId, Integer threadId) {
+        this(text, tgUsernameOrNull, displayName, replyMessageId, threadId, 0);
+    }
+
+    public TelegramInboundMessage(String text, String tgUsernameOrNull, String displayName, Integer replyMessageId,
+                                  Integer threadId, long userId) {
         this.text = text;
         this.tgUsernameOrNull = tgUsernameOrNull;
         this.displayName = displayName;
         this.replyMessageId = replyMessageId;
         this.threadId = threadId;
+        this.userId = userId;
     }
 }
@@ -2,12 +2,27 @@ package dev.mitryp.telebridge.utils;
 
 public final class Markdown {
     private static final String SPECIALS = "_*[]()~`>#+-=|{}.!";
+    private static final boolean[] SPECIAL = new boolean[128];
+
+    static {
+        for (int i = 0; i < SPECIALS.length(); i++) SPECIAL[SPECIALS.charAt(i)] = true;
+    }
+
+    /** True for the characters MarkdownV2 requires a backslash in front of. */
+    public static boolean needsEscape(char c) {
+        return c < 128 && SPECIAL[c];
+    }
 
     public static String escapeV2(String s) {
         if (s == null || s.isEmpty()) return s;
-        StringBuilder out = new StringBuilder(s.length() * 2);
-        for (char c : s.toCharArray()) {
-            if (SPECIALS.indexOf(c) >= 0) out.append('\\');
+        int first = 0;
+        while (first < s.length() && !needsEscape(s.charAt(first))) first++;
+        if (first == s.length()) return s;
+
+        StringBuilder out = new StringBuilder(s.length() + 16).append(s, 0, first);
+        for (int i = first; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (needsEscape(c)) out.append('\\');
             out.append(c);
         }
         return out.toString();
@@ -0,0 +1,76 @@
+package dev.mitryp.telebridge.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Bounded multi-producer, single-consumer ring of preallocated, reusable slots (Vyukov-style sequence per slot).
+ * <p>
+ * Producers {@link #claim()} a slot, fill it in place and {@link #publish} it; nothing is allocated per event and no
+ * lock is taken. When the ring is full {@link #claim()} fails instead of blocking, so a stalled consumer can never
+ * hold up a producer.
+ */
+public final class MpscRing<E> {
+    private final E[] slots;
+    private final AtomicLongArray sequence;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private long tail; // consumer only
+
+    @SuppressWarnings("unchecked")
+    public MpscRing(int capacityPowerOfTwo, Supplier<E> factory) {
+        if (Integer.bitCount(capacityPowerOfTwo) != 1) throw new IllegalArgumentException("capacity must be a power of two");
+        this.slots = (E[]) new Object[capacityPowerOfTwo];
+        this.sequence = new AtomicLongArray(capacityPowerOfTwo);
+        this.mask = capacityPowerOfTwo - 1;
+        for (int i = 0; i < capacityPowerOfTwo; i++) {
+            slots[i] = factory.get();
+            sequence.set(i, i);
+        }
+    }
+
+    /** @return a position to fill through {@link #slot} and then {@link #publish}, or -1 when the ring is full */
+    public long claim() {
+        while (true) {
+            long pos = head.get();
+            long dif = sequence.get((int) pos & mask) - pos;
+            if (dif == 0) {
+                if (head.compareAndSet(pos, pos + 1)) return pos;
+            } else if (dif < 0) {
+                return -1;
+            }
+        }
+    }
+
+    public E slot(long pos) {
+        return slots[(int) pos & mask];
+    }
+
+    public void publish(long pos) {
+        sequence.lazySet((int) pos & mask, pos + 1);
+    }
+
+    /** Hands up to {@code max} published slots to {@code handler} in order; the slot is reused once it returns. */
+    public int drain(Consumer<E> handler, int max) {
+        int n = 0;
+        while (n < max) {
+            int idx = (int) tail & mask;
+            if (sequence.get(idx) != tail + 1) break;
+            try {
+                handler.accept(slots[idx]);
+            } finally {
+                sequence.lazySet(idx, tail + mask + 1);
+                tail++;
+            }
+            n++;
+        }
+        return n;
+    }
+
+    /** Exact on the consumer thread, a close estimate elsewhere. */
+    public int size() {
+        return (int) Math.max(0, head.get() - tail);
+    }
+}
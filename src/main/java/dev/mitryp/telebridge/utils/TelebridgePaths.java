@@ -6,4 +6,12 @@ public final class TelebridgePaths {
     public static Path linksFile() {
         return Path.of("config", "telebridge-links.json");
     }
+
+    public static Path offsetFile() {
+        return Path.of("config", "telebridge-offset.bin");
+    }
+
+    public static Path spoolDir() {
+        return Path.of("config", "telebridge-spool");
+    }
 }
@@ -0,0 +1,39 @@
+package dev.mitryp.telebridge.utils;
+
+/**
+ * Classic token bucket driven by {@link System#nanoTime()} readings supplied by the caller.
+ * Not thread-safe: callers guard it with their own lock.
+ */
+public final class TokenBucket {
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long last;
+
+    public TokenBucket(double capacity, double tokensPerSecond) {
+        this.capacity = capacity;
+        this.tokensPerNano = tokensPerSecond / 1_000_000_000d;
+        this.tokens = capacity;
+        this.last = System.nanoTime();
+    }
+
+    /** @return 0 if a token can be taken now, otherwise how long until one can. */
+    public long nanosUntilToken(long now) {
+        refill(now);
+        return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+
+    public boolean tryTake(long now) {
+        refill(now);
+        if (tokens < 1) return false;
+        tokens -= 1;
+        return true;
+    }
+
+    private void refill(long now) {
+        long elapsed = now - last;
+        if (elapsed <= 0) return;
+        tokens = Math.min(capacity, tokens + elapsed * tokensPerNano);
+        last = now;
+    }
+}
@@ -0,0 +1,25 @@
+package dev.mitryp.telebridge.utils.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The measurements recorded directly on hot paths. Components that already keep their own counters register
+ * them on {@link #registry} while the mod is wired up instead.
+ */
+public final class BridgeMetrics {
+    public final MetricsRegistry registry = new MetricsRegistry();
+
+    public final Histogram sendLatency = registry.histogram("telebridge_send_seconds",
+            "sendMessage round trip per HTTP request", 1e9);
+    public final Histogram pollLatency = registry.histogram("telebridge_poll_seconds",
+            "getUpdates round trip, including the long-poll wait", 1e9);
+    public final Histogram updatesPerPoll = registry.histogram("telebridge_poll_updates",
+            "Updates returned per getUpdates call", 1);
+    // Both methods share one metric family, so they are registered next to each other
+    public final StatusCounters sendStatus = new StatusCounters(registry, "sendMessage");
+    public final StatusCounters pollStatus = new StatusCounters(registry, "getUpdates");
+    public final LongAdder pollErrors = registry.counter("telebridge_poll_errors_total",
+            "getUpdates calls that failed before a response was parsed");
+    public final Histogram linkSave = registry.histogram("telebridge_link_save_seconds",
+            "Time to append link changes to the journal or rewrite the snapshot", 1e9);
+}
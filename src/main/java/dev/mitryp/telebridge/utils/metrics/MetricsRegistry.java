@@ -0,0 +1,113 @@
+package dev.mitryp.telebridge.utils.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Named counters, gauges and histograms, rendered for the stats command or as Prometheus text.
+ * <p>
+ * Metrics are registered while the mod is wired up; recording goes straight to the returned {@link LongAdder} or
+ * {@link Histogram} and never touches the registry. A name may carry Prometheus labels, e.g.
+ * {@code telebridge_http_responses_total{class="2xx"}}; entries sharing a base name are exported under one HELP/TYPE
+ * header wherever they were registered, with the help and type of the first.
+ */
+public final class MetricsRegistry {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    private final List<Entry> entries = new CopyOnWriteArrayList<>();
+
+    public LongAdder counter(String name, String help) {
+        LongAdder adder = new LongAdder();
+        counter(name, help, adder::sum);
+        return adder;
+    }
+
+    /** A counter kept elsewhere, read when metrics are rendered. */
+    public void counter(String name, String help, LongSupplier value) {
+        entries.add(new Entry(name, help, "counter", value, null));
+    }
+
+    public void gauge(String name, String help, LongSupplier value) {
+        entries.add(new Entry(name, help, "gauge", value, null));
+    }
+
+    public Histogram histogram(String name, String help, double unit) {
+        Histogram h = new Histogram(unit);
+        entries.add(new Entry(name, help, "summary", null, h));
+        return h;
+    }
+
+    /** Prometheus text exposition format 0.0.4; histograms are exported as summaries. */
+    public void writePrometheus(StringBuilder out) {
+        // The format wants every sample of a metric right after its one header
+        Map<String, List<Entry>> byBase = new LinkedHashMap<>();
+        for (Entry e : entries) byBase.computeIfAbsent(e.base, k -> new ArrayList<>()).add(e);
+        for (List<Entry> family : byBase.values()) {
+            Entry first = family.get(0);
+            out.append("# HELP ").append(first.base).append(' ').append(first.help).append('\n');
+            out.append("# TYPE ").append(first.base).append(' ').append(first.type).append('\n');
+            for (Entry e : family) writeSamples(e, out);
+        }
+    }
+
+    private static void writeSamples(Entry e, StringBuilder out) {
+        if (e.histogram == null) {
+            out.append(e.name).append(' ').append(e.value.getAsLong()).append('\n');
+            return;
+        }
+        for (double q : QUANTILES) {
+            out.append(e.base).append('{');
+            if (!e.labels.isEmpty()) out.append(e.labels).append(',');
+            out.append("quantile=\"").append(q).append("\"} ").append(format(e.histogram.quantile(q))).append('\n');
+        }
+        String labels = e.labels.isEmpty() ? "" : "{" + e.labels + "}";
+        out.append(e.base).append("_sum").append(labels).append(' ').append(format(e.histogram.sum())).append('\n');
+        out.append(e.base).append("_count").append(labels).append(' ').append(e.histogram.count()).append('\n');
+    }
+
+    /** One human-readable line per metric. */
+    public List<String> describe() {
+        List<String> lines = new ArrayList<>(entries.size());
+        for (Entry e : entries) {
+            if (e.histogram == null) {
+                lines.add(e.name + " = " + e.value.getAsLong());
+                continue;
+            }
+            Histogram h = e.histogram;
+            lines.add(String.format(Locale.ROOT, "%s: n=%d p50=%s p99=%s max=%s", e.name, h.count(),
+                    format(h.quantile(0.5)), format(h.quantile(0.99)), format(h.max())));
+        }
+        return lines;
+    }
+
+    private static String format(double v) {
+        return v == Math.rint(v) && Math.abs(v) < 1e15 ? Long.toString((long) v) : String.format(Locale.ROOT, "%.6g", v);
+    }
+
+    private static final class Entry {
+        final String name;
+        final String base;
+        final String labels;
+        final String help;
+        final String type;
+        final LongSupplier value;
+        final Histogram histogram;
+
+        Entry(String name, String help, String type, LongSupplier value, Histogram histogram) {
+            int brace = name.indexOf('{');
+            this.name = name;
+            this.base = brace < 0 ? name : name.substring(0, brace);
+            this.labels = brace < 0 ? "" : name.substring(brace + 1, name.length() - 1);
+            this.help = help;
+            this.type = type;
+            this.value = value;
+            this.histogram = histogram;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package dev.mitryp.telebridge.utils.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** Responses of one Bot API method by status class; {@code -1} stands for a network error without a response. */
+public final class StatusCounters {
+    private final LongAdder ok;
+    private final LongAdder rateLimited;
+    private final LongAdder clientError;
+    private final LongAdder serverError;
+    private final LongAdder network;
+
+    StatusCounters(MetricsRegistry registry, String method) {
+        String name = "telebridge_http_responses_total{method=\"" + method + "\",class=\"";
+        String help = "Bot API responses by method and status class";
+        this.ok = registry.counter(name + "2xx\"}", help);
+        this.rateLimited = registry.counter(name + "429\"}", help);
+        this.clientError = registry.counter(name + "4xx\"}", help);
+        this.serverError = registry.counter(name + "5xx\"}", help);
+        this.network = registry.counter(name + "network\"}", help);
+    }
+
+    public void record(int status) {
+        if (status / 100 == 2) ok.increment();
+        else if (status == 429) rateLimited.increment();
+        else if (status / 100 == 4) clientError.increment();
+        else if (status / 100 == 5) serverError.increment();
+        else network.increment();
+    }
+}